@@ -0,0 +1,48 @@
+package hello.springtx;
+
+import hello.springtx.propagation.MemberService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+
+/**
+ * 기동 시간 측정, JVM 시작부터 ApplicationReadyEvent까지(time-to-ready)와 첫 트랜잭션 완료까지(time-to-first-transaction)
+ * startup.probe.exit=true면 측정 후 종료한다(AppCDS 학습 실행, 기동 벤치마크용)
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "startup.probe.enabled", havingValue = "true")
+@RequiredArgsConstructor
+public class StartupProbe {
+
+    private final MemberService memberService;
+
+    private final Environment environment;
+
+    //다른 ApplicationReadyEvent 리스너보다 먼저 시간을 잰다
+    @EventListener(ApplicationReadyEvent.class)
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    public void probe(ApplicationReadyEvent event) {
+        long ready = ManagementFactory.getRuntimeMXBean().getUptime();
+
+        memberService.joinV2("startup-probe");
+        long firstTransaction = ManagementFactory.getRuntimeMXBean().getUptime();
+
+        log.warn("startup profiles={} timeToReady={}ms timeToFirstTransaction={}ms",
+                Arrays.toString(environment.getActiveProfiles()), ready, firstTransaction);
+
+        if (environment.getProperty("startup.probe.exit", Boolean.class, false)) {
+            System.exit(SpringApplication.exit(event.getApplicationContext()));
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package hello.springtx.admission;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * AIMD 방식 동시 실행 제한
+ * 과부하 신호(커넥션 획득 실패, 풀 대기, 커넥션 대기 시간 증가, 응답시간 지연)가 보이면 limit을 backoffRatio 만큼 줄이고,
+ * 그렇지 않은데 limit의 절반 이상을 쓰고 있으면 1씩 늘린다
+ * limit을 넘는 요청은 기다리지 않고 바로 거절한다
+ *
+ * 응답시간은 메서드마다 따로 본다. 빠른 메서드의 최소 응답시간으로 느린 메서드를 재면 부하가 없어도 limit이 줄어든다
+ * 한번 튄 응답시간으로 줄이지 않도록 지수 이동 평균이 그 메서드 최소 응답시간의 rttTolerance배를 넘을 때 줄인다
+ */
+@Slf4j
+public class AdaptiveConcurrencyLimiter {
+
+    //최소 응답시간은 부하 패턴이 바뀌면 다시 재야 하므로 일정 샘플마다 초기화
+    private static final int MIN_RTT_WINDOW = 1000;
+
+    //최근 응답시간에 주는 가중치
+    private static final double RTT_ALPHA = 0.2;
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final double backoffRatio;
+    private final double rttTolerance;
+    private final long acquireThresholdNanos;
+    private final PoolWaitTracker poolWaitTracker;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final LongAdder rejected = new LongAdder();
+    private final Map<Object, RttStats> rtts = new HashMap<>();
+
+    private volatile int limit;
+
+    public AdaptiveConcurrencyLimiter(int initialLimit, int minLimit, int maxLimit, double backoffRatio,
+                                      double rttTolerance, long acquireThresholdMs, PoolWaitTracker poolWaitTracker) {
+        this.limit = initialLimit;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.backoffRatio = backoffRatio;
+        this.rttTolerance = rttTolerance;
+        this.acquireThresholdNanos = TimeUnit.MILLISECONDS.toNanos(acquireThresholdMs);
+        this.poolWaitTracker = poolWaitTracker;
+    }
+
+    public boolean tryAcquire() {
+        while (true) {
+            int current = inFlight.get();
+            if (current >= limit) {
+                rejected.increment();
+                return false;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * @param method 응답시간을 따로 볼 단위(메서드)
+     * @param rttNanos 호출 시간
+     * @param dropped 커넥션을 얻지 못하는 등 과부하로 실패했는지
+     */
+    public void release(Object method, long rttNanos, boolean dropped) {
+        int current = inFlight.getAndDecrement();
+        update(method, rttNanos, dropped, current);
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    public long getRejected() {
+        return rejected.sum();
+    }
+
+    private synchronized void update(Object method, long rttNanos, boolean dropped, int inFlightAtRelease) {
+        RttStats rtt = rtts.computeIfAbsent(method, key -> new RttStats());
+        if (!dropped) {
+            rtt.record(rttNanos);
+        }
+
+        int newLimit = limit;
+        if (dropped || isPoolSaturated() || rtt.smoothed > rtt.minRtt * rttTolerance) {
+            newLimit = Math.max(minLimit, (int) (limit * backoffRatio));
+        } else if (inFlightAtRelease * 2 >= limit) {
+            newLimit = Math.min(maxLimit, limit + 1);
+        }
+
+        if (newLimit != limit) {
+            log.debug("admission limit {} -> {} method={} rtt={}us smoothed={}us inFlight={}",
+                    limit, newLimit, method, TimeUnit.NANOSECONDS.toMicros(rttNanos),
+                    TimeUnit.NANOSECONDS.toMicros((long) rtt.smoothed), inFlightAtRelease);
+            limit = newLimit;
+        }
+    }
+
+    //update가 synchronized라 따로 동기화하지 않는다
+    private static class RttStats {
+        private long minRtt = Long.MAX_VALUE;
+        private double smoothed;
+        private int samples;
+
+        void record(long rttNanos) {
+            if (samples++ == 0) {
+                smoothed = rttNanos;
+            } else {
+                smoothed += RTT_ALPHA * (rttNanos - smoothed);
+            }
+            if (samples >= MIN_RTT_WINDOW) {
+                samples = 1;
+                minRtt = Long.MAX_VALUE;
+            }
+            minRtt = Math.min(minRtt, rttNanos);
+        }
+    }
+
+    private boolean isPoolSaturated() {
+        return poolWaitTracker != null && (poolWaitTracker.getPendingThreads() > 0
+                || poolWaitTracker.getAcquireNanos() > acquireThresholdNanos);
+    }
+}
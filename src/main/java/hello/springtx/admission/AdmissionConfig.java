@@ -0,0 +1,35 @@
+package hello.springtx.admission;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+//켜야만 동작한다(admission.enabled=true)
+@ConditionalOnProperty(name = "admission.enabled", havingValue = "true")
+public class AdmissionConfig {
+
+    //BeanPostProcessor라 static으로 등록해야 DataSource보다 먼저 만들어진다
+    @Bean
+    static PoolWaitTracker poolWaitTracker() {
+        return new PoolWaitTracker();
+    }
+
+    @Bean
+    AdaptiveConcurrencyLimiter adaptiveConcurrencyLimiter(PoolWaitTracker poolWaitTracker,
+                                                          @Value("${admission.initial-limit:20}") int initialLimit,
+                                                          @Value("${admission.min-limit:1}") int minLimit,
+                                                          @Value("${admission.max-limit:200}") int maxLimit,
+                                                          @Value("${admission.backoff-ratio:0.9}") double backoffRatio,
+                                                          @Value("${admission.rtt-tolerance:2.0}") double rttTolerance,
+                                                          @Value("${admission.acquire-threshold-ms:5}") long acquireThresholdMs) {
+        return new AdaptiveConcurrencyLimiter(initialLimit, minLimit, maxLimit, backoffRatio, rttTolerance,
+                acquireThresholdMs, poolWaitTracker);
+    }
+
+    @Bean
+    AdmissionControlAspect admissionControlAspect(AdaptiveConcurrencyLimiter adaptiveConcurrencyLimiter) {
+        return new AdmissionControlAspect(adaptiveConcurrencyLimiter);
+    }
+}
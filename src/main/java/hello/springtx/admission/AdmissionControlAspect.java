@@ -0,0 +1,62 @@
+package hello.springtx.admission;
+
+import lombok.RequiredArgsConstructor;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.transaction.CannotCreateTransactionException;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * @Service의 @Transactional 메서드 앞에서 동시 실행 수를 제한한다, 가장 바깥 호출만 센다
+ * 트랜잭션 AOP보다 바깥에 있어야 거절된 요청이 커넥션을 잡지 않는다
+ */
+@Aspect
+@Order(Ordered.HIGHEST_PRECEDENCE)
+@RequiredArgsConstructor
+public class AdmissionControlAspect {
+
+    //호출 안에서 일부러 기다린 시간(그룹 커밋 모으는 시간 등), 응답시간에서 뺀다
+    private static final ThreadLocal<long[]> EXCLUDED_NANOS = ThreadLocal.withInitial(() -> new long[1]);
+
+    private final AdaptiveConcurrencyLimiter limiter;
+
+    /**
+     * 지금 호출의 응답시간에서 뺄 대기 시간, 과부하가 아니라 설계상 기다린 시간을 알려준다
+     */
+    public static void excludeWait(long nanos) {
+        EXCLUDED_NANOS.get()[0] += nanos;
+    }
+
+    @Around("@within(org.springframework.stereotype.Service) " +
+            "&& @annotation(org.springframework.transaction.annotation.Transactional)")
+    public Object admit(ProceedingJoinPoint joinPoint) throws Throwable {
+        //이미 트랜잭션 안에서 호출된 서비스는 바깥 호출이 자리를 잡고 있다
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            return joinPoint.proceed();
+        }
+        if (!limiter.tryAcquire()) {
+            throw new AdmissionRejectedException("요청이 많아 처리할 수 없습니다. limit=" + limiter.getLimit()
+                    + " method=" + joinPoint.getSignature().toShortString());
+        }
+
+        long[] excluded = EXCLUDED_NANOS.get();
+        excluded[0] = 0;
+        long start = System.nanoTime();
+        boolean dropped = false;
+        try {
+            return joinPoint.proceed();
+        } catch (CannotCreateTransactionException e) {
+            //커넥션 획득 타임아웃
+            dropped = true;
+            throw e;
+        } finally {
+            long rtt = Math.max(0, System.nanoTime() - start - excluded[0]);
+            excluded[0] = 0;
+            limiter.release(((MethodSignature) joinPoint.getSignature()).getMethod(), rtt, dropped);
+        }
+    }
+}
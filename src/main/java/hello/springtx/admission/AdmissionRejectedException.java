@@ -0,0 +1,7 @@
+package hello.springtx.admission;
+
+public class AdmissionRejectedException extends RuntimeException {
+    public AdmissionRejectedException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,65 @@
+package hello.springtx.admission;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.metrics.IMetricsTracker;
+import com.zaxxer.hikari.metrics.MetricsTrackerFactory;
+import com.zaxxer.hikari.metrics.PoolStats;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 히카리 커넥션 풀에서 커넥션을 얻기까지 기다린 시간과 대기 쓰레드 수
+ * 풀이 시작되기 전에 HikariDataSource에 MetricsTrackerFactory로 끼워 넣는다
+ */
+public class PoolWaitTracker implements MetricsTrackerFactory, BeanPostProcessor {
+
+    //최근 값에 가중치를 두는 지수 이동 평균
+    private static final double ALPHA = 0.2;
+
+    private volatile double acquireNanos;
+    private volatile PoolStats poolStats;
+    private final LongAdder timeouts = new LongAdder();
+
+    @Override
+    public Object postProcessBeforeInitialization(Object bean, String beanName) {
+        if (bean instanceof HikariDataSource) {
+            ((HikariDataSource) bean).setMetricsTrackerFactory(this);
+        }
+        return bean;
+    }
+
+    @Override
+    public IMetricsTracker create(String poolName, PoolStats poolStats) {
+        this.poolStats = poolStats;
+        return new IMetricsTracker() {
+            @Override
+            public void recordConnectionAcquiredNanos(long elapsedAcquiredNanos) {
+                recordAcquire(elapsedAcquiredNanos);
+            }
+
+            @Override
+            public void recordConnectionTimeout() {
+                timeouts.increment();
+            }
+        };
+    }
+
+    //정확한 평균보다 추세가 필요해서 동기화 없이 갱신한다
+    void recordAcquire(long nanos) {
+        acquireNanos = acquireNanos + ALPHA * (nanos - acquireNanos);
+    }
+
+    public long getAcquireNanos() {
+        return (long) acquireNanos;
+    }
+
+    public int getPendingThreads() {
+        PoolStats stats = poolStats;
+        return stats == null ? 0 : stats.getPendingThreads();
+    }
+
+    public long getTimeouts() {
+        return timeouts.sum();
+    }
+}
@@ -0,0 +1,91 @@
+package hello.springtx.concurrent;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * MemberService/OrderService 호출을 별도 쓰레드에서 실행한다
+ * caller.executor.mode=virtual 이면 호출마다 가상 쓰레드, platform 이면 고정 크기 쓰레드 풀
+ *
+ * 가상 쓰레드가 synchronized 안에서 막히면(H2 락 대기 등) 캐리어 쓰레드가 같이 묶인다(pinning)
+ * 그래서 DB에 들어가는 호출 수를 세마포어로 제한한다, REQUIRES_NEW는 호출당 커넥션을 2개 잡으므로 풀 크기의 절반 이하로 둔다
+ * 나머지는 세마포어에서 기다리는데, 이 대기는 캐리어를 놓아주므로 호출자 수만큼 쓰레드를 만들어도 된다
+ */
+@Slf4j
+@Component
+public class CallerExecutor {
+
+    private final ExecutorService executor;
+    private final Semaphore dbPermits;
+    private final boolean virtual;
+    private final AtomicInteger maxInDb = new AtomicInteger();
+    private final AtomicInteger inDb = new AtomicInteger();
+
+    public CallerExecutor(@Value("${caller.executor.mode:platform}") String mode,
+                          @Value("${caller.executor.platform-threads:200}") int platformThreads,
+                          @Value("${caller.executor.db-permits:5}") int dbPermits) {
+        if ("virtual".equals(mode) && !VirtualThreads.isSupported()) {
+            log.warn("가상 쓰레드를 쓸 수 없어 플랫폼 쓰레드 풀로 실행합니다. java.version={}",
+                    System.getProperty("java.version"));
+        }
+        this.virtual = "virtual".equals(mode) && VirtualThreads.isSupported();
+        this.executor = virtual
+                ? VirtualThreads.newThreadPerTaskExecutor("caller-")
+                : Executors.newFixedThreadPool(platformThreads);
+        this.dbPermits = new Semaphore(dbPermits);
+    }
+
+    @PreDestroy
+    void close() {
+        executor.shutdown();
+    }
+
+    public boolean isVirtual() {
+        return virtual;
+    }
+
+    /**
+     * 동시에 DB 구간에 들어간 호출 수의 최댓값
+     */
+    public int getMaxInDb() {
+        return maxInDb.get();
+    }
+
+    public CompletableFuture<Void> run(ThrowingRunnable call) {
+        return submit(() -> {
+            call.run();
+            return null;
+        });
+    }
+
+    public <T> CompletableFuture<T> submit(Callable<T> call) {
+        return CompletableFuture.supplyAsync(() -> {
+            dbPermits.acquireUninterruptibly();
+            maxInDb.accumulateAndGet(inDb.incrementAndGet(), Math::max);
+            try {
+                return call.call();
+            } catch (Exception e) {
+                throw new CompletionException(e);
+            } finally {
+                inDb.decrementAndGet();
+                dbPermits.release();
+            }
+        }, executor);
+    }
+
+    //NotEnoughMoneyException 같은 체크 예외를 던지는 서비스 호출용
+    @FunctionalInterface
+    public interface ThrowingRunnable {
+        void run() throws Exception;
+    }
+}
@@ -0,0 +1,83 @@
+package hello.springtx.concurrent;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * 가상 쓰레드 생성, 빌드는 Java 11이라 JDK 21 이상에서 실행될 때만 리플렉션으로 쓴다
+ * 가상 쓰레드도 ThreadLocal을 쓰레드마다 따로 가지므로 TransactionSynchronizationManager의 트랜잭션 바인딩은 그대로 동작한다
+ */
+public final class VirtualThreads {
+
+    private static final MethodHandle IS_VIRTUAL;
+    private static final MethodHandle OF_VIRTUAL;
+    private static final MethodHandle NAME;
+    private static final MethodHandle FACTORY;
+    private static final MethodHandle NEW_THREAD_PER_TASK_EXECUTOR;
+
+    static {
+        MethodHandle isVirtual = null;
+        MethodHandle ofVirtual = null;
+        MethodHandle name = null;
+        MethodHandle factory = null;
+        MethodHandle newThreadPerTaskExecutor = null;
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+            Class<?> builder = Class.forName("java.lang.Thread$Builder");
+            Class<?> ofVirtualBuilder = Class.forName("java.lang.Thread$Builder$OfVirtual");
+            isVirtual = lookup.findVirtual(Thread.class, "isVirtual", MethodType.methodType(boolean.class));
+            ofVirtual = lookup.findStatic(Thread.class, "ofVirtual", MethodType.methodType(ofVirtualBuilder));
+            name = lookup.findVirtual(ofVirtualBuilder, "name",
+                    MethodType.methodType(ofVirtualBuilder, String.class, long.class));
+            factory = lookup.findVirtual(builder, "factory", MethodType.methodType(ThreadFactory.class));
+            newThreadPerTaskExecutor = lookup.findStatic(Executors.class,
+                    "newThreadPerTaskExecutor", MethodType.methodType(ExecutorService.class, ThreadFactory.class));
+        } catch (ReflectiveOperationException e) {
+            //JDK 21 미만
+        }
+        IS_VIRTUAL = isVirtual;
+        OF_VIRTUAL = ofVirtual;
+        NAME = name;
+        FACTORY = factory;
+        NEW_THREAD_PER_TASK_EXECUTOR = newThreadPerTaskExecutor;
+    }
+
+    private VirtualThreads() {
+    }
+
+    public static boolean isSupported() {
+        return NEW_THREAD_PER_TASK_EXECUTOR != null;
+    }
+
+    public static boolean isVirtual(Thread thread) {
+        if (IS_VIRTUAL == null) {
+            return false;
+        }
+        try {
+            return (boolean) IS_VIRTUAL.invoke(thread);
+        } catch (Throwable e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * 작업마다 가상 쓰레드를 하나씩 만드는 실행기, 이름은 prefix0, prefix1, ...
+     */
+    public static ExecutorService newThreadPerTaskExecutor(String prefix) {
+        if (!isSupported()) {
+            throw new UnsupportedOperationException("가상 쓰레드는 JDK 21 이상에서 사용할 수 있습니다. java.version="
+                    + System.getProperty("java.version"));
+        }
+        try {
+            Object builder = NAME.invoke(OF_VIRTUAL.invoke(), prefix, 0L);
+            ThreadFactory threadFactory = (ThreadFactory) FACTORY.invoke(builder);
+            return (ExecutorService) NEW_THREAD_PER_TASK_EXECUTOR.invoke(threadFactory);
+        } catch (Throwable e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package hello.springtx.order;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.GeneratedValue;
+import javax.persistence.Id;
+
+@Entity
+@Getter
+@Setter
+public class Account {
+
+    @Id
+    @GeneratedValue
+    private Long id;
+
+    @Column(unique = true)
+    private String userName;
+
+    private int stripes; //잔고를 나눠 담은 AccountStripe 행 수
+
+    public Account() {
+    }
+
+    public Account(String userName, int stripes) {
+        this.userName = userName;
+        this.stripes = stripes;
+    }
+}
@@ -0,0 +1,10 @@
+package hello.springtx.order;
+
+/**
+ * 주문자의 계좌가 없을 때, 잔고 부족(NotEnoughMoneyException)과 달리 고객이 해결할 수 있는 문제가 아니라 시스템 예외로 롤백한다
+ */
+public class AccountNotFoundException extends RuntimeException {
+    public AccountNotFoundException(String message) {
+        super(message);
+    }
+}
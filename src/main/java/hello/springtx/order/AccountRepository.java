@@ -0,0 +1,10 @@
+package hello.springtx.order;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import java.util.Optional;
+
+public interface AccountRepository extends JpaRepository<Account, Long> {
+
+    Optional<Account> findByUserName(String userName);
+}
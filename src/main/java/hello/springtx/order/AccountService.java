@@ -0,0 +1,92 @@
+package hello.springtx.order;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class AccountService {
+
+    //메모리 예약과 DB 잔고가 어긋났을 때, 메모리 잔고를 버리므로 한 번 다시 하면 풀릴 수 있다(OrderJournalApplier)
+    static final String BALANCE_MISMATCH = "계좌 잔고가 일치하지 않습니다";
+
+    private final AccountRepository accountRepository;
+
+    private final AccountStripeRepository accountStripeRepository;
+
+    private final LedgerEntryRepository ledgerEntryRepository;
+
+    private final BalanceReservations balanceReservations;
+
+    //잔고를 stripes개 행에 나눠서 계좌를 만든다
+    @Transactional
+    public Account open(String userName, long balance, int stripes) {
+        Account account = accountRepository.save(new Account(userName, stripes));
+
+        long[] stripeBalances = new long[stripes];
+        for (int i = 0; i < stripes; i++) {
+            stripeBalances[i] = balance / stripes + (i < balance % stripes ? 1 : 0);
+            accountStripeRepository.save(new AccountStripe(account.getId(), i, stripeBalances[i]));
+        }
+
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                balanceReservations.register(account.getId(), stripeBalances);
+            }
+        });
+        return account;
+    }
+
+    @Transactional(readOnly = true)
+    public long getBalance(String userName) {
+        Account account = accountRepository.findByUserName(userName).orElseThrow();
+        return accountStripeRepository.findByAccountIdOrderByStripe(account.getId()).stream()
+                .mapToLong(AccountStripe::getBalance)
+                .sum();
+    }
+
+    /**
+     * 주문 트랜잭션에 참여해서 잔고를 차감한다
+     * 잔고가 부족하면 체크 예외라 주문 트랜잭션은 롤백되지 않고, 메모리/DB 잔고도 건드리지 않는다
+     */
+    @Transactional
+    public void withdraw(String userName, Long orderId, long amount) throws NotEnoughMoneyException {
+        Account account = accountRepository.findByUserName(userName)
+                .orElseThrow(() -> new AccountNotFoundException("계좌가 없습니다. userName=" + userName));
+
+        long[] taken = balanceReservations.reserve(account.getId(), amount);
+        if (taken == null) {
+            throw new NotEnoughMoneyException("잔고가 부족합니다");
+        }
+
+        //주문 트랜잭션이 롤백되면 메모리 예약도 되돌린다
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status != STATUS_COMMITTED) {
+                    balanceReservations.release(account.getId(), taken);
+                }
+            }
+        });
+
+        for (int stripe = 0; stripe < taken.length; stripe++) {
+            if (taken[stripe] > 0 && accountStripeRepository.withdraw(account.getId(), stripe, taken[stripe]) == 0) {
+                //메모리와 DB 잔고가 다르면 시스템 예외로 롤백, 예약을 되돌린 뒤 메모리 잔고를 버리고 다음 주문에서 DB에서 다시 읽는다
+                TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                    @Override
+                    public void afterCompletion(int status) {
+                        balanceReservations.invalidate(account.getId());
+                    }
+                });
+                throw new IllegalStateException(BALANCE_MISMATCH + ". accountId=" + account.getId());
+            }
+        }
+        ledgerEntryRepository.save(new LedgerEntry(account.getId(), orderId, amount));
+    }
+}
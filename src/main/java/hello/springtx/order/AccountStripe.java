@@ -0,0 +1,40 @@
+package hello.springtx.order;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import javax.persistence.Entity;
+import javax.persistence.GeneratedValue;
+import javax.persistence.Id;
+import javax.persistence.Table;
+import javax.persistence.UniqueConstraint;
+
+/**
+ * 계좌 잔고의 한 조각
+ * 잔고를 여러 행에 나눠 두면 주문이 몰리는 계좌도 한 행의 락에 줄을 서지 않는다
+ */
+@Entity
+@Table(uniqueConstraints = @UniqueConstraint(columnNames = {"accountId", "stripe"}))
+@Getter
+@Setter
+public class AccountStripe {
+
+    @Id
+    @GeneratedValue
+    private Long id;
+
+    private Long accountId;
+
+    private int stripe;
+
+    private long balance;
+
+    public AccountStripe() {
+    }
+
+    public AccountStripe(Long accountId, int stripe, long balance) {
+        this.accountId = accountId;
+        this.stripe = stripe;
+        this.balance = balance;
+    }
+}
@@ -0,0 +1,19 @@
+package hello.springtx.order;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.List;
+
+public interface AccountStripeRepository extends JpaRepository<AccountStripe, Long> {
+
+    List<AccountStripe> findByAccountIdOrderByStripe(Long accountId);
+
+    //잔고가 충분할 때만 차감, 차감된 행 수(0 또는 1)를 반환
+    @Modifying
+    @Query("update AccountStripe s set s.balance = s.balance - :amount " +
+            "where s.accountId = :accountId and s.stripe = :stripe and s.balance >= :amount")
+    int withdraw(@Param("accountId") Long accountId, @Param("stripe") int stripe, @Param("amount") long amount);
+}
@@ -0,0 +1,104 @@
+package hello.springtx.order;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 계좌별 AccountStripe 잔고를 메모리에 들고 CAS로 예약한다
+ * DB 조건부 update 전에 여기서 먼저 잔고를 잡으므로, 잔고가 부족한 주문은 DB 락 없이 바로 걸러진다
+ * 처음 쓰는 계좌는 DB에서 읽어오고, 이후 잔고 변경은 모두 여기를 거친다
+ */
+@Component
+@RequiredArgsConstructor
+public class BalanceReservations {
+
+    private final AccountStripeRepository accountStripeRepository;
+
+    private final ConcurrentMap<Long, AtomicLongArray> balances = new ConcurrentHashMap<>();
+
+    /**
+     * @return stripe별 예약 금액, 잔고가 부족하면 null
+     */
+    long[] reserve(Long accountId, long amount) {
+        AtomicLongArray stripes = balances.computeIfAbsent(accountId, this::load);
+        int size = stripes.length();
+        int start = ThreadLocalRandom.current().nextInt(size);
+
+        //쓰레드마다 다른 stripe부터 시도해서 한 stripe에 몰리지 않게 한다
+        for (int i = 0; i < size; i++) {
+            int stripe = (start + i) % size;
+            if (take(stripes, stripe, amount)) {
+                long[] taken = new long[size];
+                taken[stripe] = amount;
+                return taken;
+            }
+        }
+
+        //한 stripe로 모자라면 여러 stripe에서 나눠 가져온다
+        long[] taken = new long[size];
+        long remaining = amount;
+        for (int i = 0; i < size && remaining > 0; i++) {
+            int stripe = (start + i) % size;
+            while (true) {
+                long current = stripes.get(stripe);
+                if (current <= 0) {
+                    break;
+                }
+                long part = Math.min(current, remaining);
+                if (stripes.compareAndSet(stripe, current, current - part)) {
+                    taken[stripe] += part;
+                    remaining -= part;
+                    break;
+                }
+            }
+        }
+        if (remaining > 0) {
+            release(accountId, taken);
+            return null;
+        }
+        return taken;
+    }
+
+    void release(Long accountId, long[] taken) {
+        AtomicLongArray stripes = balances.get(accountId);
+        for (int i = 0; i < taken.length; i++) {
+            if (taken[i] != 0) {
+                stripes.addAndGet(i, taken[i]);
+            }
+        }
+    }
+
+    //계좌를 연 트랜잭션의 afterCommit에서 호출된다
+    //커밋 직후 다른 쓰레드가 먼저 DB에서 읽어 예약을 시작했으면 그 잔고가 맞으므로 덮어쓰지 않는다
+    void register(Long accountId, long[] stripeBalances) {
+        balances.putIfAbsent(accountId, new AtomicLongArray(stripeBalances));
+    }
+
+    //메모리 잔고가 DB와 어긋났을 때, 다음 예약에서 DB에서 다시 읽는다
+    void invalidate(Long accountId) {
+        balances.remove(accountId);
+    }
+
+    private static boolean take(AtomicLongArray stripes, int stripe, long amount) {
+        while (true) {
+            long current = stripes.get(stripe);
+            if (current < amount) {
+                return false;
+            }
+            if (stripes.compareAndSet(stripe, current, current - amount)) {
+                return true;
+            }
+        }
+    }
+
+    private AtomicLongArray load(Long accountId) {
+        List<AccountStripe> stripes = accountStripeRepository.findByAccountIdOrderByStripe(accountId);
+        return new AtomicLongArray(stripes.stream().mapToLong(AccountStripe::getBalance).toArray());
+    }
+}
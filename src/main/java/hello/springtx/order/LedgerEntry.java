@@ -0,0 +1,36 @@
+package hello.springtx.order;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import javax.persistence.Entity;
+import javax.persistence.GeneratedValue;
+import javax.persistence.Id;
+
+/**
+ * 주문으로 계좌에서 빠져나간 금액 기록
+ */
+@Entity
+@Getter
+@Setter
+public class LedgerEntry {
+
+    @Id
+    @GeneratedValue
+    private Long id;
+
+    private Long accountId;
+
+    private Long orderId;
+
+    private long amount;
+
+    public LedgerEntry() {
+    }
+
+    public LedgerEntry(Long accountId, Long orderId, long amount) {
+        this.accountId = accountId;
+        this.orderId = orderId;
+        this.amount = amount;
+    }
+}
@@ -2,14 +2,23 @@ package hello.springtx.order;
 
 import lombok.Getter;
 import lombok.Setter;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
+import javax.persistence.Cacheable;
+import javax.persistence.Column;
+import javax.persistence.Convert;
 import javax.persistence.Entity;
 import javax.persistence.GeneratedValue;
 import javax.persistence.Id;
+import javax.persistence.Index;
 import javax.persistence.Table;
 
 @Entity
-@Table(name = "orders") //orders라는 테이블과 매핑, order가 예약어라서
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE) //완료된 주문은 거의 바뀌지 않는다, 변경은 soft lock으로 캐시와 맞춘다
+@Table(name = "orders", //orders라는 테이블과 매핑, order가 예약어라서
+        indexes = @Index(name = "idx_orders_pay_status", columnList = "pay_status"))
 @Getter
 @Setter
 public class Order {
@@ -19,5 +28,11 @@ public class Order {
     private Long id;
 
     private String userName; //정상, 예외, 잔고부족
-    private String payStatus; //대기, 완료
+
+    //대기, 완료, 문자열 대신 1바이트 코드(tinyint)로 저장한다, 화면/리포트에서만 label로 바꾼다
+    @Convert(converter = PayStatusConverter.class)
+    @Column(name = "pay_status")
+    private PayStatus payStatus;
+
+    private Long amount; //결제 금액, 없으면 잔고 차감 없음
 }
@@ -0,0 +1,30 @@
+package hello.springtx.order;
+
+import lombok.RequiredArgsConstructor;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.core.Ordered;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * 트랜잭션 밖에서 호출된 OrderService.order를 그룹 커밋으로 보낸다
+ * 이미 트랜잭션 안이면(그룹 커밋 쓰레드, 저널 적용기 등) 그 트랜잭션에 그대로 참여한다
+ */
+@Aspect
+//admission 제한 다음, 트랜잭션 AOP보다 바깥
+@org.springframework.core.annotation.Order(Ordered.HIGHEST_PRECEDENCE + 1)
+@RequiredArgsConstructor
+public class OrderGroupCommitAspect {
+
+    private final OrderGroupCommitter orderGroupCommitter;
+
+    @Around("execution(* hello.springtx.order.OrderService.order(..)) && args(order)")
+    public Object groupCommit(ProceedingJoinPoint joinPoint, Order order) throws Throwable {
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            return joinPoint.proceed();
+        }
+        orderGroupCommitter.order(order);
+        return null;
+    }
+}
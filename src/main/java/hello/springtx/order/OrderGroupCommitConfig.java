@@ -0,0 +1,28 @@
+package hello.springtx.order;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.transaction.PlatformTransactionManager;
+
+@Configuration
+@ConditionalOnProperty(name = "order.group-commit.enabled", havingValue = "true")
+public class OrderGroupCommitConfig {
+
+    @Bean
+    OrderGroupCommitter orderGroupCommitter(ObjectProvider<OrderService> orderService,
+                                            PlatformTransactionManager transactionManager,
+                                            @Value("${order.group-commit.max-batch:64}") int maxBatch,
+                                            @Value("${order.group-commit.window-us:500}") long windowMicros,
+                                            @Value("${order.group-commit.flushers:2}") int flushers,
+                                            @Value("${order.group-commit.timeout-ms:30000}") long timeoutMs) {
+        return new OrderGroupCommitter(orderService, transactionManager, maxBatch, windowMicros, flushers, timeoutMs);
+    }
+
+    @Bean
+    OrderGroupCommitAspect orderGroupCommitAspect(OrderGroupCommitter orderGroupCommitter) {
+        return new OrderGroupCommitAspect(orderGroupCommitter);
+    }
+}
@@ -0,0 +1,293 @@
+package hello.springtx.order;
+
+import hello.springtx.admission.AdmissionControlAspect;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionTimedOutException;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 그룹 커밋, 동시에 들어온 주문을 모아서 한 트랜잭션, 한 번의 커밋으로 반영한다
+ * 첫 주문이 들어온 뒤 window 동안 또는 maxBatch개가 찰 때까지 모은다
+ *
+ * 주문마다 결과는 따로 돌려준다
+ * - 잔고 부족(체크 예외)은 커밋된 뒤 그 호출자에게만 던진다
+ * - 시스템 예외는 트랜잭션 전체를 롤백시키므로, 실패한 주문만 빼고 나머지로 다시 실행한다
+ *   주문마다 flush해서 다음 주문의 자동 flush에서 앞 주문이 실패해도 원인 주문을 뺀다
+ *   실패한 주문은 직접 호출했을 때처럼 받은 id를 그대로 둔다
+ * - 누가 원인인지 모르는 실패(커밋 실패 등)는 주문마다 따로 트랜잭션을 열어 다시 실행한다
+ * - 그 밖에 flusher에서 난 예외/에러는 배치의 모든 주문에 그대로 돌려준다
+ *
+ * 호출자는 timeout까지만 기다린다, 그때까지 flusher가 가져가지 않은(claim) 주문은 취소하고 실행하지 않는다
+ * 이미 가져간 주문은 커밋될 수 있으므로 timeout이 지나도 배치 결과를 기다린다
+ * 종료(close) 후 들어온 주문은 바로 거절한다
+ */
+@Slf4j
+public class OrderGroupCommitter {
+
+    private final ObjectProvider<OrderService> orderService;
+    private final TransactionTemplate txTemplate;
+    private final int maxBatch;
+    private final long windowNanos;
+    private final long timeoutMs;
+    private final BlockingQueue<Request> queue = new LinkedBlockingQueue<>();
+    private final List<Thread> flushers = new ArrayList<>();
+    private final LongAdder commits = new LongAdder();
+    private final LongAdder orders = new LongAdder();
+
+    private volatile boolean running = true;
+
+    //OrderService 프록시에 이 빈의 aspect가 걸리므로 OrderService는 처음 쓸 때 가져온다
+    public OrderGroupCommitter(ObjectProvider<OrderService> orderService, PlatformTransactionManager transactionManager,
+                               int maxBatch, long windowMicros, int flusherCount, long timeoutMs) {
+        this.orderService = orderService;
+        this.txTemplate = new TransactionTemplate(transactionManager);
+        this.maxBatch = maxBatch;
+        this.windowNanos = TimeUnit.MICROSECONDS.toNanos(windowMicros);
+        this.timeoutMs = timeoutMs;
+        for (int i = 0; i < flusherCount; i++) {
+            Thread flusher = new Thread(this::flushLoop, "order-group-commit-" + i);
+            flusher.setDaemon(true);
+            flusher.start();
+            flushers.add(flusher);
+        }
+    }
+
+    @PreDestroy
+    void close() {
+        running = false;
+        flushers.forEach(Thread::interrupt);
+        Request request;
+        while ((request = queue.poll()) != null) {
+            if (request.cancel()) {
+                request.result.completeExceptionally(closed());
+            }
+        }
+    }
+
+    /**
+     * 그룹 커밋이 끝날 때까지 timeout만큼 기다린다, 결과는 OrderService.order를 직접 호출한 것과 같다
+     * 시간이 지났을 때 flusher가 아직 가져가지 않았으면 취소하고 TransactionTimedOutException
+     */
+    public void order(Order order) throws NotEnoughMoneyException {
+        if (!running) {
+            throw closed();
+        }
+        Request request = new Request(order);
+        queue.add(request);
+        //close가 큐를 비운 뒤에 넣었으면 직접 거절한다
+        if (!running && request.cancel()) {
+            queue.remove(request);
+            request.result.completeExceptionally(closed());
+        }
+        try {
+            await(request);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof NotEnoughMoneyException) {
+                throw (NotEnoughMoneyException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException(cause);
+        } finally {
+            //배치를 모으는 동안 기다린 시간은 과부하 신호가 아니므로 admission 응답시간에서 뺀다
+            AdmissionControlAspect.excludeWait(request.collectedNanos());
+        }
+    }
+
+    private void await(Request request) throws ExecutionException {
+        try {
+            request.result.get(timeoutMs, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException | InterruptedException e) {
+            if (e instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
+            //flusher가 가져가기 전에 취소했으면 실행되지 않는다
+            if (request.cancel()) {
+                queue.remove(request);
+                TransactionTimedOutException timeout = new TransactionTimedOutException(
+                        "그룹 커밋을 기다리는 시간이 지났습니다. timeoutMs=" + timeoutMs);
+                timeout.initCause(e);
+                request.result.completeExceptionally(timeout);
+                throw timeout;
+            }
+            //이미 배치에 들어가 커밋될 수 있으므로 실패로 알리지 않고 결과를 기다린다, flusher는 항상 결과를 완료시킨다
+            try {
+                request.result.join();
+            } catch (CompletionException completion) {
+                throw new ExecutionException(completion.getCause());
+            }
+        }
+    }
+
+    private static IllegalStateException closed() {
+        return new IllegalStateException("그룹 커밋이 종료되었습니다");
+    }
+
+    public long getCommits() {
+        return commits.sum();
+    }
+
+    public long getOrders() {
+        return orders.sum();
+    }
+
+    private void flushLoop() {
+        List<Request> batch = new ArrayList<>(maxBatch);
+        while (running) {
+            try {
+                Request first = queue.take();
+                if (!first.claim()) {
+                    continue;
+                }
+                batch.add(first);
+                long deadline = System.nanoTime() + windowNanos;
+                while (batch.size() < maxBatch) {
+                    Request next = queue.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    //timeout으로 취소된 주문은 건너뛴다
+                    if (next.claim()) {
+                        batch.add(next);
+                    }
+                }
+                long flushedAt = System.nanoTime();
+                batch.forEach(request -> request.flushedAt = flushedAt);
+                commit(new ArrayList<>(batch));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                batch.forEach(request -> request.result.completeExceptionally(closed()));
+                return;
+            } catch (Throwable e) {
+                //Error도 호출자에게 돌려준다, 이미 결과를 받은 주문은 그대로
+                log.error("그룹 커밋 실패", e);
+                batch.forEach(request -> request.result.completeExceptionally(e));
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void commit(List<Request> pending) {
+        while (!pending.isEmpty()) {
+            Request[] failed = new Request[1];
+            try {
+                txTemplate.executeWithoutResult(status -> {
+                    for (Request request : pending) {
+                        failed[0] = request;
+                        request.run(orderService.getObject());
+                        //뒤 주문의 쿼리에서 자동 flush될 때 실패하면 엉뚱한 주문을 빼게 되므로 주문마다 flush한다
+                        status.flush();
+                    }
+                    failed[0] = null;
+                });
+                commits.increment();
+                orders.add(pending.size());
+                pending.forEach(Request::complete);
+                return;
+            } catch (RuntimeException e) {
+                if (failed[0] == null) {
+                    log.info("그룹 커밋 실패, 주문마다 따로 커밋 size={}", pending.size(), e);
+                    pending.forEach(Request::reset);
+                    pending.forEach(this::commitAlone);
+                    return;
+                }
+                //실패한 주문만 빼고 나머지로 다시 실행, 실패한 주문은 받은 id를 지우지 않는다
+                log.info("그룹 커밋 롤백, 실패한 주문을 빼고 다시 실행 userName={} size={}",
+                        failed[0].order.getUserName(), pending.size());
+                pending.remove(failed[0]);
+                failed[0].result.completeExceptionally(e);
+                pending.forEach(Request::reset);
+            }
+        }
+    }
+
+    private void commitAlone(Request request) {
+        try {
+            txTemplate.executeWithoutResult(status -> request.run(orderService.getObject()));
+            commits.increment();
+            orders.increment();
+            request.complete();
+        } catch (RuntimeException e) {
+            request.result.completeExceptionally(e);
+        }
+    }
+
+    private static class Request {
+
+        private static final int QUEUED = 0;
+        private static final int CLAIMED = 1;
+        private static final int CANCELLED = 2;
+
+        private final Order order;
+        private final AtomicInteger state = new AtomicInteger(QUEUED);
+        private final CompletableFuture<Void> result = new CompletableFuture<>();
+        private final long enqueuedAt = System.nanoTime();
+        //result 완료 전에 쓰므로 join한 호출자에게 보인다
+        private long flushedAt;
+        private NotEnoughMoneyException notEnoughMoney;
+
+        Request(Order order) {
+            this.order = order;
+        }
+
+        //그룹 트랜잭션에 참여한다
+        void run(OrderService orderService) {
+            try {
+                orderService.order(order);
+            } catch (NotEnoughMoneyException e) {
+                notEnoughMoney = e;
+            }
+        }
+
+        //flusher가 배치에 넣기 전에 가져간다, 취소된 주문은 가져갈 수 없다
+        boolean claim() {
+            return state.compareAndSet(QUEUED, CLAIMED);
+        }
+
+        //호출자 timeout/종료, flusher가 가져간 주문은 취소할 수 없다
+        boolean cancel() {
+            return state.compareAndSet(QUEUED, CANCELLED);
+        }
+
+        long collectedNanos() {
+            return flushedAt == 0 ? 0 : flushedAt - enqueuedAt;
+        }
+
+        //커밋된 뒤에 결과를 알린다
+        void complete() {
+            if (notEnoughMoney != null) {
+                result.completeExceptionally(notEnoughMoney);
+            } else {
+                result.complete(null);
+            }
+        }
+
+        //롤백된 트랜잭션에서 받은 id, 결제 상태를 지우고 다시 실행한다
+        void reset() {
+            order.setId(null);
+            order.setPayStatus(null);
+            notEnoughMoney = null;
+        }
+    }
+}
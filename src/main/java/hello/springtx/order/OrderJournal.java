@@ -0,0 +1,322 @@
+package hello.springtx.order;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * 주문 저널, 고정 크기 세그먼트 파일을 mmap 해서 뒤에만 덧붙인다
+ * 레코드: [payload 길이][payload CRC32C][payload: userName, amount]
+ * 세그먼트 끝에 레코드가 들어가지 않으면 END_OF_SEGMENT를 쓰고 다음 세그먼트로 넘어간다
+ * offset은 세그먼트 번호 * segmentSize + 세그먼트 안의 위치
+ *
+ * append는 force(msync)가 끝나야 반환한다, 동시에 들어온 append는 force 한번에 같이 실린다(group fsync)
+ * 기동 시 마지막 세그먼트를 처음부터 검사해서 CRC가 맞는 마지막 레코드 뒤를 쓰기 위치로 삼는다
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "order.journal.enabled", havingValue = "true")
+public class OrderJournal {
+
+    static final int HEADER_SIZE = Integer.BYTES + Integer.BYTES;
+
+    private static final int END_OF_SEGMENT = -1;
+
+    private final Path dir;
+    private final int segmentSize;
+    private final ConcurrentSkipListMap<Long, MappedByteBuffer> segments = new ConcurrentSkipListMap<>();
+
+    private final ReentrantLock appendLock = new ReentrantLock();
+    private final ReentrantLock syncLock = new ReentrantLock();
+    private final LongAdder syncs = new LongAdder();
+
+    //appendLock
+    private MappedByteBuffer current;
+    private long currentSegment;
+    private int position;
+
+    private volatile long writtenOffset;
+    private volatile long syncedOffset;
+
+    @Autowired
+    public OrderJournal(@Value("${order.journal.dir:order-journal}") String dir,
+                        @Value("${order.journal.segment-size-mb:64}") int segmentSizeMb) {
+        this(Paths.get(dir), segmentSizeMb * 1024 * 1024);
+    }
+
+    OrderJournal(Path dir, int segmentSize) {
+        this.dir = dir;
+        this.segmentSize = segmentSize;
+        try {
+            Files.createDirectories(dir);
+            try (Stream<Path> files = Files.list(dir)) {
+                files.map(path -> path.getFileName().toString())
+                        .filter(name -> name.startsWith("orders-") && name.endsWith(".journal"))
+                        .map(name -> Long.parseLong(name.substring("orders-".length(), name.length() - ".journal".length())))
+                        .sorted()
+                        .forEach(segment -> segments.put(segment, map(segment)));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        if (segments.isEmpty()) {
+            segments.put(0L, map(0));
+        }
+        currentSegment = segments.lastKey();
+        current = segments.get(currentSegment);
+        position = recover(current);
+        if (position < 0) {
+            //END_OF_SEGMENT까지 쓰고 다음 세그먼트를 만들기 전에 멈췄다
+            currentSegment++;
+            current = map(currentSegment);
+            segments.put(currentSegment, current);
+            position = 0;
+        }
+        writtenOffset = offset(currentSegment, position);
+        syncedOffset = writtenOffset;
+        log.info("order journal dir={} segments={} tail={}", dir, segments.size(), writtenOffset);
+    }
+
+    @PreDestroy
+    void close() {
+        appendLock.lock();
+        try {
+            current.force();
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    /**
+     * 디스크에 반영될 때까지 기다린다
+     * @return 다음 레코드 offset, 적용된 offset이 이 값 이상이면 DB에 반영된 것
+     */
+    public long append(String userName, Long amount) {
+        byte[] userNameBytes = userName.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer payload = ByteBuffer.allocate(Integer.BYTES + userNameBytes.length + 1 + Long.BYTES);
+        payload.putInt(userNameBytes.length).put(userNameBytes)
+                .put((byte) (amount == null ? 0 : 1)).putLong(amount == null ? 0 : amount);
+        CRC32C crc = new CRC32C();
+        crc.update(payload.array());
+
+        int recordSize = HEADER_SIZE + payload.capacity();
+        //END_OF_SEGMENT 자리는 항상 남겨둔다
+        if (recordSize > segmentSize - Integer.BYTES) {
+            throw new IllegalArgumentException("주문이 세그먼트보다 큽니다. size=" + recordSize);
+        }
+
+        long end;
+        appendLock.lock();
+        try {
+            if (position + recordSize > segmentSize - Integer.BYTES) {
+                roll();
+            }
+            ByteBuffer buffer = current.duplicate();
+            buffer.position(position);
+            buffer.putInt(payload.capacity()).putInt((int) crc.getValue()).put(payload.array());
+            position += recordSize;
+            end = offset(currentSegment, position);
+            writtenOffset = end;
+        } finally {
+            appendLock.unlock();
+        }
+
+        sync(end);
+        return end;
+    }
+
+    /**
+     * from부터 디스크에 반영된 레코드를 최대 max개 읽는다
+     */
+    public List<OrderJournalEntry> read(long from, int max) {
+        List<OrderJournalEntry> entries = new ArrayList<>();
+        long limit = syncedOffset;
+        long offset = Math.max(from, offset(segments.firstKey(), 0));
+        while (entries.size() < max && offset < limit) {
+            long segment = offset / segmentSize;
+            ByteBuffer buffer = segments.get(segment).duplicate();
+            buffer.position((int) (offset % segmentSize));
+
+            int length = buffer.getInt();
+            if (length == END_OF_SEGMENT) {
+                offset = offset(segment + 1, 0);
+                continue;
+            }
+            int crc = buffer.getInt();
+            byte[] payload = new byte[length];
+            buffer.get(payload);
+            if (crc(payload) != crc) {
+                //fsync까지 끝난 구간이라 깨질 수 없다
+                throw new IllegalStateException("주문 저널이 손상되었습니다. offset=" + offset);
+            }
+
+            long next = offset + HEADER_SIZE + length;
+            entries.add(decode(offset, next, payload));
+            offset = next;
+        }
+        return entries;
+    }
+
+    /**
+     * 모두 적용된 세그먼트 파일을 지운다
+     */
+    public void release(long appliedOffset) {
+        long appliedSegment = appliedOffset / segmentSize;
+        for (Long segment : List.copyOf(segments.keySet())) {
+            if (segment >= appliedSegment || segment >= currentSegment()) {
+                break;
+            }
+            segments.remove(segment);
+            try {
+                Files.deleteIfExists(segmentPath(segment));
+            } catch (IOException e) {
+                log.warn("주문 저널 세그먼트 삭제 실패 segment={}", segment, e);
+            }
+        }
+    }
+
+    public long getSyncedOffset() {
+        return syncedOffset;
+    }
+
+    //append 수보다 적으면 force를 나눠 쓴 것
+    public long getSyncCount() {
+        return syncs.sum();
+    }
+
+    private void sync(long end) {
+        if (syncedOffset >= end) {
+            return;
+        }
+        syncLock.lock();
+        try {
+            //기다리는 동안 다른 쓰레드의 force에 같이 실렸다
+            if (syncedOffset >= end) {
+                return;
+            }
+            MappedByteBuffer target;
+            long upTo;
+            appendLock.lock();
+            try {
+                target = current;
+                upTo = writtenOffset;
+            } finally {
+                appendLock.unlock();
+            }
+            //이전 세그먼트는 roll에서 이미 force 했다
+            target.force();
+            syncs.increment();
+            syncedOffset = upTo;
+        } finally {
+            syncLock.unlock();
+        }
+    }
+
+    //appendLock
+    private void roll() {
+        current.putInt(position, END_OF_SEGMENT);
+        current.force();
+        currentSegment++;
+        current = map(currentSegment);
+        segments.put(currentSegment, current);
+        position = 0;
+    }
+
+    private long currentSegment() {
+        appendLock.lock();
+        try {
+            return currentSegment;
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    /**
+     * @return 쓰기 위치, END_OF_SEGMENT를 만나면 -1
+     */
+    private int recover(MappedByteBuffer segment) {
+        int tail = 0;
+        while (tail + HEADER_SIZE <= segmentSize - Integer.BYTES) {
+            int length = segment.getInt(tail);
+            if (length == END_OF_SEGMENT) {
+                return -1;
+            }
+            if (length <= 0 || tail + HEADER_SIZE + length > segmentSize - Integer.BYTES) {
+                break;
+            }
+            byte[] payload = new byte[length];
+            ByteBuffer buffer = segment.duplicate();
+            buffer.position(tail + HEADER_SIZE);
+            buffer.get(payload);
+            if (crc(payload) != segment.getInt(tail + Integer.BYTES)) {
+                break;
+            }
+            tail += HEADER_SIZE + length;
+        }
+
+        //끝이 잘린 레코드(ack 전) 뒤를 지워서 나중에 덧붙인 레코드 뒤에 옛 바이트가 남지 않게 한다
+        if (segment.getInt(tail) != 0) {
+            log.warn("주문 저널 끝의 불완전한 레코드를 버립니다. offset={}", offset(currentSegment, tail));
+            for (int i = tail; i < segmentSize; i++) {
+                segment.put(i, (byte) 0);
+            }
+            segment.force();
+        }
+        return tail;
+    }
+
+    private MappedByteBuffer map(long segment) {
+        try (FileChannel channel = FileChannel.open(segmentPath(segment),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            return channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private Path segmentPath(long segment) {
+        return dir.resolve(String.format("orders-%012d.journal", segment));
+    }
+
+    private long offset(long segment, int position) {
+        return segment * segmentSize + position;
+    }
+
+    private static int crc(byte[] payload) {
+        CRC32C crc = new CRC32C();
+        crc.update(payload);
+        return (int) crc.getValue();
+    }
+
+    private static OrderJournalEntry decode(long offset, long next, byte[] payload) {
+        ByteBuffer buffer = ByteBuffer.wrap(payload);
+        byte[] userName = new byte[buffer.getInt()];
+        buffer.get(userName);
+        boolean hasAmount = buffer.get() == 1;
+        long amount = buffer.getLong();
+        return new OrderJournalEntry(offset, next, new String(userName, StandardCharsets.UTF_8),
+                hasAmount ? amount : null);
+    }
+}
@@ -0,0 +1,282 @@
+package hello.springtx.order;
+
+import hello.springtx.tx.TransactionDeadline;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.RecoverableDataAccessException;
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.CannotCreateTransactionException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionTimedOutException;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PreDestroy;
+import javax.persistence.LockTimeoutException;
+import javax.persistence.PessimisticLockException;
+import java.sql.SQLRecoverableException;
+import java.sql.SQLTransientException;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 주문 저널을 백그라운드에서 batchSize개씩 한 트랜잭션으로 DB에 반영한다
+ * 체크포인트(적용한 offset)를 주문과 같은 트랜잭션에서 갱신하므로 중간에 죽어도 커밋된 배치는 다시 적용하지 않는다
+ * 배치가 시스템 예외로 롤백되면 한 건씩 다시 적용하고, 한 건씩 커밋할 때마다 appliedOffset도 옮긴다
+ *
+ * 실패는 두 가지로 나눈다
+ * - 일시적 실패(락/커넥션 실패, 트랜잭션 데드라인): 체크포인트를 옮기지 않고 backoff 후 같은 주문부터 다시 적용
+ * - 메모리와 DB 잔고 불일치: 메모리 잔고를 다시 읽고 한 번만 다시 적용, 그래도 안 되면 poison
+ * - 그 밖의 실패(poison): 주문은 롤백하고 OrderJournalDeadLetter에 남긴 뒤 건너뛴다, dead letter와 체크포인트는 같은 트랜잭션
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "order.journal.enabled", havingValue = "true")
+public class OrderJournalApplier {
+
+    static final String CHECKPOINT_ID = "orders";
+
+    private final OrderJournal orderJournal;
+    private final OrderService orderService;
+    private final OrderJournalCheckpointRepository checkpointRepository;
+    private final OrderJournalDeadLetterRepository deadLetterRepository;
+    private final TransactionTemplate txTemplate;
+    private final String checkpointId;
+    private final int batchSize;
+    private final long applyIntervalMs;
+    private final long retryBackoffMs;
+    private final long maxRetryBackoffMs;
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "order-journal-applier");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final ReentrantLock applyLock = new ReentrantLock();
+
+    private volatile long appliedOffset;
+
+    //스케줄러 쓰레드만 쓴다
+    private long backoffMs;
+    private long retryAt;
+
+    @Autowired
+    public OrderJournalApplier(OrderJournal orderJournal, OrderService orderService,
+                               OrderJournalCheckpointRepository checkpointRepository,
+                               OrderJournalDeadLetterRepository deadLetterRepository,
+                               PlatformTransactionManager transactionManager,
+                               @Value("${order.journal.batch-size:500}") int batchSize,
+                               @Value("${order.journal.apply-interval-ms:10}") long applyIntervalMs,
+                               @Value("${order.journal.retry-backoff-ms:100}") long retryBackoffMs,
+                               @Value("${order.journal.max-retry-backoff-ms:10000}") long maxRetryBackoffMs) {
+        this(orderJournal, orderService, checkpointRepository, deadLetterRepository, transactionManager,
+                CHECKPOINT_ID, batchSize, applyIntervalMs, retryBackoffMs, maxRetryBackoffMs);
+    }
+
+    //테스트에서 다른 저널을 같은 DB에 적용할 때 체크포인트를 나눈다
+    OrderJournalApplier(OrderJournal orderJournal, OrderService orderService,
+                        OrderJournalCheckpointRepository checkpointRepository,
+                        OrderJournalDeadLetterRepository deadLetterRepository,
+                        PlatformTransactionManager transactionManager, String checkpointId,
+                        int batchSize, long applyIntervalMs, long retryBackoffMs, long maxRetryBackoffMs) {
+        this.orderJournal = orderJournal;
+        this.orderService = orderService;
+        this.checkpointRepository = checkpointRepository;
+        this.deadLetterRepository = deadLetterRepository;
+        this.txTemplate = new TransactionTemplate(transactionManager);
+        this.checkpointId = checkpointId;
+        this.batchSize = batchSize;
+        this.applyIntervalMs = applyIntervalMs;
+        this.retryBackoffMs = retryBackoffMs;
+        this.maxRetryBackoffMs = maxRetryBackoffMs;
+    }
+
+    /**
+     * 마지막 체크포인트부터 이어서 적용한다
+     * 체크포인트가 저널 끝보다 뒤면(저널 디렉터리를 지웠거나 다른 저널을 붙인 경우) 그 앞에 쓰인 주문은 적용되지 않으므로 기동을 멈춘다
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        appliedOffset = checkpointRepository.findById(checkpointId)
+                .map(OrderJournalCheckpoint::getAppliedOffset)
+                .orElse(0L);
+        if (appliedOffset > orderJournal.getSyncedOffset()) {
+            throw new IllegalStateException("주문 저널 체크포인트가 저널 끝보다 뒤에 있습니다. checkpointId=" + checkpointId
+                    + " appliedOffset=" + appliedOffset + " syncedOffset=" + orderJournal.getSyncedOffset());
+        }
+        log.info("order journal 적용 시작 appliedOffset={} syncedOffset={}", appliedOffset, orderJournal.getSyncedOffset());
+        scheduler.scheduleWithFixedDelay(this::applyAll, 0, applyIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    void close() {
+        scheduler.shutdown();
+    }
+
+    public long getAppliedOffset() {
+        return appliedOffset;
+    }
+
+    /**
+     * offset까지 적용될 때까지 기다린다
+     */
+    public boolean awaitApplied(long offset, long timeoutMs) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+        while (appliedOffset < offset) {
+            if (System.nanoTime() > deadline) {
+                return false;
+            }
+            Thread.sleep(1);
+        }
+        return true;
+    }
+
+    //실패하면 체크포인트를 그대로 두고 retryBackoffMs부터 두 배씩 maxRetryBackoffMs까지 기다렸다가 다시 적용한다
+    private void applyAll() {
+        if (backoffMs > 0 && System.nanoTime() - retryAt < 0) {
+            return;
+        }
+        try {
+            while (applyBatch() > 0) {
+                //밀린 만큼 계속
+            }
+            backoffMs = 0;
+        } catch (RuntimeException e) {
+            backoffMs = backoffMs == 0 ? retryBackoffMs : Math.min(backoffMs * 2, maxRetryBackoffMs);
+            retryAt = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(backoffMs);
+            log.warn("order journal 적용 실패, {}ms 뒤 다시 적용 appliedOffset={} transient={}",
+                    backoffMs, appliedOffset, isTransient(e), e);
+        }
+    }
+
+    /**
+     * 백그라운드 작업이라 기본 트랜잭션 데드라인을 받지 않는다
+     * 일시적 실패는 그대로 던지고, 그 전까지 한 건씩 커밋한 만큼은 appliedOffset에 반영돼 있다
+     * @return 적용한 레코드 수
+     */
+    public int applyBatch() {
+        return TransactionDeadline.withoutDefault(this::applyNext);
+    }
+
+    private int applyNext() {
+        applyLock.lock();
+        try {
+            List<OrderJournalEntry> entries = orderJournal.read(appliedOffset, batchSize);
+            if (entries.isEmpty()) {
+                return 0;
+            }
+
+            long last = entries.get(entries.size() - 1).getNextOffset();
+            try {
+                txTemplate.executeWithoutResult(status -> {
+                    entries.forEach(this::apply);
+                    checkpoint(last);
+                });
+            } catch (RuntimeException e) {
+                if (isTransient(e)) {
+                    throw e;
+                }
+                log.warn("order journal 배치 롤백, 한 건씩 다시 적용 offset={} size={}",
+                        entries.get(0).getOffset(), entries.size(), e);
+                try {
+                    //한 건씩 커밋하므로 중간에 실패해도 커밋한 주문은 다시 적용하지 않는다
+                    for (OrderJournalEntry entry : entries) {
+                        applyOne(entry, true);
+                        appliedOffset = entry.getNextOffset();
+                    }
+                } finally {
+                    orderJournal.release(appliedOffset);
+                }
+                return entries.size();
+            }
+
+            appliedOffset = last;
+            orderJournal.release(last);
+            return entries.size();
+        } finally {
+            applyLock.unlock();
+        }
+    }
+
+    /**
+     * @param retryMismatch 잔고 불일치면 한 번만 다시 적용한다, 롤백하면서 계좌의 메모리 잔고를 버리므로 다시 하면 DB 잔고로 예약한다
+     */
+    private void applyOne(OrderJournalEntry entry, boolean retryMismatch) {
+        try {
+            txTemplate.executeWithoutResult(status -> {
+                apply(entry);
+                checkpoint(entry.getNextOffset());
+            });
+        } catch (RuntimeException e) {
+            if (isTransient(e)) {
+                log.warn("주문 저널 일시적 적용 실패, 다시 적용합니다 offset={} userName={}", entry.getOffset(), entry.getUserName(), e);
+                throw e;
+            }
+            if (retryMismatch && isBalanceMismatch(e)) {
+                log.warn("주문 저널 잔고 불일치, 메모리 잔고를 다시 읽고 한 번 더 적용합니다 offset={} userName={}",
+                        entry.getOffset(), entry.getUserName(), e);
+                applyOne(entry, false);
+                return;
+            }
+            log.error("주문 저널 적용 실패, dead letter로 옮기고 건너뜁니다 offset={} userName={}",
+                    entry.getOffset(), entry.getUserName(), e);
+            txTemplate.executeWithoutResult(status -> {
+                deadLetterRepository.save(new OrderJournalDeadLetter(checkpointId, entry, e));
+                checkpoint(entry.getNextOffset());
+            });
+        }
+    }
+
+    /**
+     * 다시 적용하면 성공할 수 있는 실패, 원인 체인에서 찾는다
+     * 락/커넥션/쿼리 타임아웃, 트랜잭션 데드라인
+     * 잔고 불일치는 같은 주문이 계속 실패해서 저널 전체가 멈출 수 있으므로 여기 넣지 않는다(applyOne에서 한 번만 다시 적용)
+     */
+    static boolean isTransient(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof TransientDataAccessException
+                    || cause instanceof RecoverableDataAccessException
+                    || cause instanceof DataAccessResourceFailureException
+                    || cause instanceof CannotCreateTransactionException
+                    || cause instanceof TransactionTimedOutException
+                    || cause instanceof PessimisticLockException
+                    || cause instanceof LockTimeoutException
+                    || cause instanceof SQLTransientException
+                    || cause instanceof SQLRecoverableException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    //메모리 예약과 DB 잔고 불일치(AccountService)
+    static boolean isBalanceMismatch(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof IllegalStateException && cause.getMessage() != null
+                    && cause.getMessage().startsWith(AccountService.BALANCE_MISMATCH)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    //주문 트랜잭션에 참여한다
+    private void apply(OrderJournalEntry entry) {
+        try {
+            orderService.order(entry.toOrder());
+        } catch (NotEnoughMoneyException e) {
+            log.info("잔고 부족, 주문은 대기 상태로 반영 offset={}", entry.getOffset());
+        }
+    }
+
+    private void checkpoint(long offset) {
+        checkpointRepository.save(new OrderJournalCheckpoint(checkpointId, offset));
+    }
+}
@@ -0,0 +1,29 @@
+package hello.springtx.order;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import javax.persistence.Entity;
+import javax.persistence.Id;
+
+/**
+ * 주문 저널을 어디까지 DB에 반영했는지, 주문과 같은 트랜잭션에서 갱신해서 재시작해도 두 번 적용하지 않는다
+ */
+@Entity
+@Getter
+@Setter
+public class OrderJournalCheckpoint {
+
+    @Id
+    private String id;
+
+    private long appliedOffset;
+
+    public OrderJournalCheckpoint() {
+    }
+
+    public OrderJournalCheckpoint(String id, long appliedOffset) {
+        this.id = id;
+        this.appliedOffset = appliedOffset;
+    }
+}
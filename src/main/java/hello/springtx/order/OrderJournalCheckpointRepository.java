@@ -0,0 +1,6 @@
+package hello.springtx.order;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+
+public interface OrderJournalCheckpointRepository extends JpaRepository<OrderJournalCheckpoint, String> {
+}
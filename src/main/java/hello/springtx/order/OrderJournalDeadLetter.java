@@ -0,0 +1,45 @@
+package hello.springtx.order;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.GeneratedValue;
+import javax.persistence.Id;
+
+/**
+ * 다시 적용해도 계속 실패하는 주문 저널 레코드, 체크포인트와 같은 트랜잭션에서 남기므로 건너뛴 주문은 모두 여기 있다
+ */
+@Entity
+@Getter
+@Setter
+public class OrderJournalDeadLetter {
+
+    @Id
+    @GeneratedValue
+    private Long id;
+
+    private String checkpointId;
+
+    private long journalOffset;
+
+    private String userName;
+
+    private Long amount;
+
+    @Column(length = 1000)
+    private String reason;
+
+    public OrderJournalDeadLetter() {
+    }
+
+    public OrderJournalDeadLetter(String checkpointId, OrderJournalEntry entry, Throwable cause) {
+        this.checkpointId = checkpointId;
+        this.journalOffset = entry.getOffset();
+        this.userName = entry.getUserName();
+        this.amount = entry.getAmount();
+        String reason = cause.getClass().getName() + ": " + cause.getMessage();
+        this.reason = reason.length() > 1000 ? reason.substring(0, 1000) : reason;
+    }
+}
@@ -0,0 +1,10 @@
+package hello.springtx.order;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import java.util.List;
+
+public interface OrderJournalDeadLetterRepository extends JpaRepository<OrderJournalDeadLetter, Long> {
+
+    List<OrderJournalDeadLetter> findByCheckpointId(String checkpointId);
+}
@@ -0,0 +1,29 @@
+package hello.springtx.order;
+
+import lombok.Getter;
+
+/**
+ * 주문 저널 레코드 하나, nextOffset까지 적용하면 이 주문이 DB에 반영된 것
+ */
+@Getter
+public class OrderJournalEntry {
+
+    private final long offset;
+    private final long nextOffset;
+    private final String userName;
+    private final Long amount;
+
+    public OrderJournalEntry(long offset, long nextOffset, String userName, Long amount) {
+        this.offset = offset;
+        this.nextOffset = nextOffset;
+        this.userName = userName;
+        this.amount = amount;
+    }
+
+    public Order toOrder() {
+        Order order = new Order();
+        order.setUserName(userName);
+        order.setAmount(amount);
+        return order;
+    }
+}
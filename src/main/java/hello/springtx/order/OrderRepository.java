@@ -2,5 +2,12 @@ package hello.springtx.order;
 
 import org.springframework.data.jpa.repository.JpaRepository;
 
+import java.util.List;
+
 public interface OrderRepository extends JpaRepository<Order, Long> {
+
+    List<Order> findByUserName(String userName);
+
+    //idx_orders_pay_status
+    long countByPayStatus(PayStatus payStatus);
 }
@@ -2,6 +2,7 @@ package hello.springtx.order;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -12,6 +13,29 @@ public class OrderService {
 
     private final OrderRepository orderRepository;
 
+    private final AccountService accountService;
+
+    private final ObjectProvider<OrderJournal> orderJournal;
+
+    /**
+     * 저널 모드(order.journal.enabled=true), 주문을 저널에 쓰고 디스크 반영(fsync)까지만 기다린다
+     * DB 반영(id, 결제 상태)은 OrderJournalApplier가 배치로 하므로 order 파라미터는 바뀌지 않는다
+     * @return 저널 offset, OrderJournalApplier.getAppliedOffset()이 이 값 이상이면 DB에 반영된 것
+     */
+    public long accept(Order order) {
+        OrderJournal journal = orderJournal.getIfAvailable();
+        if (journal == null) {
+            throw new IllegalStateException("주문 저널이 꺼져 있습니다. order.journal.enabled=false");
+        }
+
+        //저널에 쓴 뒤에는 되돌릴 수 없으므로 시스템 예외는 미리 낸다
+        if (order.getUserName().equals("예외")) {
+            log.info("시스템 예외 발생");
+            throw new RuntimeException("시스템 예외");
+        }
+        return journal.append(order.getUserName(), order.getAmount());
+    }
+
     //JPA는 트랜잭션 커밋 시점에 Order 데이터를 DB에 반영한다
     @Transactional
     public void order(Order order) throws NotEnoughMoneyException {
@@ -22,15 +46,22 @@ public class OrderService {
         if (order.getUserName().equals("예외")) {
             log.info("시스템 예외 발생");
             throw new RuntimeException("시스템 예외");
-        } else if (order.getUserName().equals("잔고부족")) {
-            log.info("잔고 부족 비즈니스 예외 발생");
-            order.setPayStatus("대기");
-            throw new NotEnoughMoneyException("잔고가 부족합니다");
-        } else {
-            //정상 승인
-            //여기에 JPA save 로직을 넣으면, 체크 예외 발생시 영속 컨텍스트에 엔티티가 없어 커밋될때 insert가 되지 않는다
-            log.info("정상 승인");
-            order.setPayStatus("완료");
         }
+
+        //잔고 부족은 체크 예외라 주문은 대기 상태로 커밋된다
+        if (order.getAmount() != null && order.getAmount() > 0) {
+            try {
+                accountService.withdraw(order.getUserName(), order.getId(), order.getAmount());
+            } catch (NotEnoughMoneyException e) {
+                log.info("잔고 부족 비즈니스 예외 발생");
+                order.setPayStatus(PayStatus.WAITING);
+                throw e;
+            }
+        }
+
+        //정상 승인
+        //여기에 JPA save 로직을 넣으면, 체크 예외 발생시 영속 컨텍스트에 엔티티가 없어 커밋될때 insert가 되지 않는다
+        log.info("정상 승인");
+        order.setPayStatus(PayStatus.COMPLETED);
     }
 }
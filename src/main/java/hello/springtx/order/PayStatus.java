@@ -0,0 +1,38 @@
+package hello.springtx.order;
+
+import lombok.Getter;
+
+import java.util.Arrays;
+
+/**
+ * 결제 상태, DB에는 code(1바이트)로 저장하고 화면/기존 코드에는 label을 쓴다
+ * code는 저장된 값이므로 바꾸거나 재사용하면 안 된다
+ */
+@Getter
+public enum PayStatus {
+
+    WAITING((byte) 1, "대기"),
+    COMPLETED((byte) 2, "완료");
+
+    private final byte code;
+    private final String label;
+
+    PayStatus(byte code, String label) {
+        this.code = code;
+        this.label = label;
+    }
+
+    public static PayStatus ofCode(byte code) {
+        return Arrays.stream(values())
+                .filter(status -> status.code == code)
+                .findAny()
+                .orElseThrow(() -> new IllegalArgumentException("알 수 없는 결제 상태 코드입니다. code=" + code));
+    }
+
+    public static PayStatus ofLabel(String label) {
+        return Arrays.stream(values())
+                .filter(status -> status.label.equals(label))
+                .findAny()
+                .orElseThrow(() -> new IllegalArgumentException("알 수 없는 결제 상태입니다. label=" + label));
+    }
+}
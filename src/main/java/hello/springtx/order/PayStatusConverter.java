@@ -0,0 +1,18 @@
+package hello.springtx.order;
+
+import javax.persistence.AttributeConverter;
+import javax.persistence.Converter;
+
+@Converter
+public class PayStatusConverter implements AttributeConverter<PayStatus, Byte> {
+
+    @Override
+    public Byte convertToDatabaseColumn(PayStatus attribute) {
+        return attribute == null ? null : attribute.getCode();
+    }
+
+    @Override
+    public PayStatus convertToEntityAttribute(Byte dbData) {
+        return dbData == null ? null : PayStatus.ofCode(dbData);
+    }
+}
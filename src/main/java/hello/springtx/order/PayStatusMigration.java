@@ -0,0 +1,139 @@
+package hello.springtx.order;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * 문자열(대기, 완료)로 저장된 pay_status 컬럼을 PayStatus 코드(tinyint)로 바꾼다 (H2 문법)
+ * 1. pay_status_code 컬럼 추가
+ * 2. id 범위를 chunkSize씩 나눠서 코드를 채운다, 범위마다 따로 커밋되므로 행이 많아도 락/undo가 작다
+ * 3. 옛 컬럼과 인덱스를 지우고 pay_status로 이름을 바꾼 뒤 인덱스를 만든다
+ * 중간에 멈춰도 다시 실행하면 이어간다
+ * - 2에서 멈춤: 채워지지 않은 행부터 채운다
+ * - 옛 컬럼을 지우고 이름을 바꾸기 전에 멈춤(pay_status 없음, pay_status_code 있음): 이름 바꾸기부터 한다
+ * - 이미 바뀐 테이블은 인덱스만 확인하고 건너뛴다
+ * 스프링 트랜잭션 없이 JdbcTemplate 자동 커밋으로 실행하므로 트랜잭션 데드라인(tx.deadline.default-ms)을 받지 않는다
+ *
+ * 기동 시 orders 테이블을 먼저 변환한다(order.pay-status-migration.on-startup)
+ * 순서: DataSource -> PayStatusMigration(orders) -> EntityManagerFactory(hibernate 스키마 생성/검증)
+ * Order.payStatus는 tinyint 코드로 매핑되므로 hibernate가 뜨기 전에 바꿔야 한다, 순서는 PayStatusMigrationConfig가 건다
+ */
+@Slf4j
+@Component
+public class PayStatusMigration {
+
+    static final String ORDERS_TABLE = "orders";
+
+    //테이블 이름을 SQL에 그대로 붙이므로 식별자만 받는다
+    private static final Pattern TABLE_NAME = Pattern.compile("[A-Za-z_][A-Za-z0-9_]*");
+
+    private final JdbcTemplate jdbcTemplate;
+    private final boolean onStartup;
+    private final long chunkSize;
+
+    public PayStatusMigration(JdbcTemplate jdbcTemplate,
+                              @Value("${order.pay-status-migration.on-startup:true}") boolean onStartup,
+                              @Value("${order.pay-status-migration.chunk-size:10000}") long chunkSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.onStartup = onStartup;
+        this.chunkSize = chunkSize;
+    }
+
+    //orders 테이블이 아직 없으면(새 DB) hibernate가 tinyint로 만들므로 할 일이 없다
+    @PostConstruct
+    void migrateOrders() {
+        if (!onStartup) {
+            return;
+        }
+        if (columnType(ORDERS_TABLE, "PAY_STATUS") == null && columnType(ORDERS_TABLE, "PAY_STATUS_CODE") == null) {
+            log.info("orders.pay_status 없음, 변환하지 않습니다");
+            return;
+        }
+        migrate(ORDERS_TABLE, chunkSize);
+    }
+
+    /**
+     * 기동 시에는 orders만 변환한다, 다른 테이블은 테스트/벤치마크에서만 쓴다
+     * @return 코드를 채운 행 수
+     */
+    long migrate(String table, long chunkSize) {
+        if (!TABLE_NAME.matcher(table).matches()) {
+            throw new IllegalArgumentException("테이블 이름이 올바르지 않습니다. table=" + table);
+        }
+        String type = columnType(table, "PAY_STATUS");
+        if (type == null) {
+            if (columnType(table, "PAY_STATUS_CODE") == null) {
+                throw new IllegalArgumentException("pay_status 컬럼이 없습니다. table=" + table);
+            }
+            //옛 컬럼을 지운 뒤에 멈췄다, 코드는 pay_status_code에 모두 채워져 있다
+            log.info("pay_status 변환 이어서 마무리 table={}", table);
+            renameCodeColumn(table);
+            return 0;
+        }
+        if (!type.contains("CHAR")) {
+            log.info("pay_status 이미 변환됨 table={} type={}", table, type);
+            createIndex(table);
+            return 0;
+        }
+
+        if (columnType(table, "PAY_STATUS_CODE") == null) {
+            jdbcTemplate.execute("alter table " + table + " add column pay_status_code tinyint");
+        }
+
+        //PayStatus에서 만들어서 코드와 어긋나지 않게 한다
+        String toCode = Arrays.stream(PayStatus.values())
+                .map(status -> "when '" + status.getLabel() + "' then " + status.getCode())
+                .collect(Collectors.joining(" ", "case pay_status ", " end"));
+        Map<String, Object> range = jdbcTemplate.queryForMap("select min(id) min_id, max(id) max_id from " + table
+                + " where pay_status is not null and pay_status_code is null");
+        long migrated = 0;
+        if (range.get("MIN_ID") != null) {
+            long minId = ((Number) range.get("MIN_ID")).longValue();
+            long maxId = ((Number) range.get("MAX_ID")).longValue();
+            for (long from = minId; from <= maxId; from += chunkSize) {
+                migrated += jdbcTemplate.update("update " + table + " set pay_status_code = " + toCode
+                        + " where id between ? and ? and pay_status_code is null", from, from + chunkSize - 1);
+            }
+        }
+
+        //모르는 문자열이 남아 있으면 옛 컬럼을 지우지 않는다
+        Long unknown = jdbcTemplate.queryForObject("select count(*) from " + table
+                + " where pay_status is not null and pay_status_code is null", Long.class);
+        if (unknown != null && unknown > 0) {
+            throw new IllegalStateException("코드로 바꿀 수 없는 결제 상태가 있습니다. table=" + table + " rows=" + unknown);
+        }
+
+        List<String> indexes = jdbcTemplate.queryForList("select index_name from information_schema.index_columns " +
+                "where table_schema = current_schema and table_name = ? and column_name = 'PAY_STATUS'",
+                String.class, table.toUpperCase());
+        indexes.forEach(index -> jdbcTemplate.execute("drop index if exists " + index));
+        jdbcTemplate.execute("alter table " + table + " drop column pay_status");
+        renameCodeColumn(table);
+        log.info("pay_status 변환 완료 table={} rows={} droppedIndexes={}", table, migrated, indexes);
+        return migrated;
+    }
+
+    private void renameCodeColumn(String table) {
+        jdbcTemplate.execute("alter table " + table + " alter column pay_status_code rename to pay_status");
+        createIndex(table);
+    }
+
+    private void createIndex(String table) {
+        jdbcTemplate.execute("create index if not exists idx_" + table + "_pay_status on " + table + "(pay_status)");
+    }
+
+    private String columnType(String table, String column) {
+        return jdbcTemplate.queryForList("select data_type from information_schema.columns " +
+                        "where table_schema = current_schema and table_name = ? and column_name = ?",
+                String.class, table.toUpperCase(), column).stream().findAny().orElse(null);
+    }
+}
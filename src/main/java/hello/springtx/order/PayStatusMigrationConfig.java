@@ -0,0 +1,24 @@
+package hello.springtx.order;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.orm.jpa.EntityManagerFactoryDependsOnPostProcessor;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * EntityManagerFactory가 PayStatusMigration 다음에 만들어지게 한다(Flyway 자동 구성과 같은 방식)
+ * 기동 순서: DataSource -> PayStatusMigration(orders pay_status 문자열 -> tinyint) -> EntityManagerFactory
+ * 그래서 문자열 pay_status가 남아 있는 기존 DB에서도 hibernate는 항상 바뀐 스키마를 본다
+ */
+@Configuration(proxyBeanMethods = false)
+@ConditionalOnProperty(name = "order.pay-status-migration.on-startup", havingValue = "true", matchIfMissing = true)
+public class PayStatusMigrationConfig {
+
+    @Configuration(proxyBeanMethods = false)
+    static class PayStatusMigrationEntityManagerFactoryDependsOnPostProcessor
+            extends EntityManagerFactoryDependsOnPostProcessor {
+
+        PayStatusMigrationEntityManagerFactoryDependsOnPostProcessor() {
+            super(PayStatusMigration.class);
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package hello.springtx.propagation;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+import java.util.List;
+import java.util.Optional;
+
+@Slf4j
+@Repository
+@ConditionalOnProperty(name = "member.sharding.enabled", havingValue = "false", matchIfMissing = true)
+@RequiredArgsConstructor
+public class JpaMemberRepository implements MemberRepository {
+
+    private final EntityManager em;
+
+    @Override
+    @Transactional
+    public void save(Member member) {
+        log.info("member 저장");
+        em.persist(member);
+    }
+
+    @Override
+    public Optional<Member> find(String username) {
+        return em.createNamedQuery("Member.findByUsername", Member.class)
+                .setParameter("username", username)
+                .getResultList().stream().findAny();
+    }
+
+    @Override
+    public List<Member> findByUsernameStartingWith(String prefix) {
+        return em.createNamedQuery("Member.findByUsernameStartingWith", Member.class)
+                .setParameter("prefix", prefix + "%")
+                .getResultList();
+    }
+
+    @Override
+    public long count() {
+        return em.createNamedQuery("Member.count", Long.class)
+                .getSingleResult();
+    }
+}
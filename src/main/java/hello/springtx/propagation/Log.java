@@ -6,7 +6,11 @@ import lombok.Setter;
 import javax.persistence.Entity;
 import javax.persistence.GeneratedValue;
 import javax.persistence.Id;
+import javax.persistence.NamedQuery;
+import javax.persistence.PrePersist;
+import java.time.LocalDateTime;
 
+@NamedQuery(name = "Log.findByMessage", query = "select l from Log l where l.message = :message")
 @Entity
 @Getter
 @Setter
@@ -18,10 +22,19 @@ public class Log {
 
     private String message;
 
+    private LocalDateTime createdAt; //아카이브 대상 판단용
+
     public Log() {
     }
 
     public Log(String message) {
         this.message = message;
     }
+
+    @PrePersist
+    void prePersist() {
+        if (createdAt == null) {
+            createdAt = LocalDateTime.now();
+        }
+    }
 }
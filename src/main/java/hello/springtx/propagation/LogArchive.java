@@ -0,0 +1,135 @@
+package hello.springtx.propagation;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * 오래된 Log를 옮겨둔 압축 세그먼트 파일들
+ * 세그먼트는 추가만 되고 수정되지 않으므로 목록은 CopyOnWriteArrayList로 둔다
+ */
+@Slf4j
+@Component
+public class LogArchive {
+
+    private final Path dir;
+
+    private final List<LogSegment> segments = new CopyOnWriteArrayList<>();
+
+    public LogArchive(@Value("${log.archive.dir:log-archive}") String dir) {
+        this.dir = Paths.get(dir);
+    }
+
+    @PostConstruct
+    void load() {
+        try {
+            Files.createDirectories(dir);
+            try (Stream<Path> files = Files.list(dir)) {
+                List<Path> paths = files.filter(p -> p.getFileName().toString().endsWith(".seg"))
+                        .sorted()
+                        .collect(Collectors.toList());
+                for (Path path : paths) {
+                    segments.add(LogSegment.open(path));
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        log.info("log archive 로딩 dir={} segments={}", dir, segments.size());
+    }
+
+    @PreDestroy
+    void close() {
+        segments.forEach(LogSegment::close);
+    }
+
+    /**
+     * id 순으로 정렬된 logs를 새 세그먼트로 추가한다
+     * 같은 id 범위의 세그먼트가 이미 있으면 다시 쓰지 않는다
+     * @return 압축 전 바이트 수와 세그먼트 파일 크기
+     */
+    ArchiveResult append(List<Log> logs) {
+        long firstId = logs.get(0).getId();
+        long lastId = logs.get(logs.size() - 1).getId();
+        //파일 이름 정렬 순서가 id 순서가 되도록 0을 채운다
+        Path path = dir.resolve(String.format("log-%019d-%019d.seg", firstId, lastId));
+        Optional<LogSegment> existing = segments.stream().filter(s -> s.path().equals(path)).findAny();
+        if (existing.isPresent()) {
+            return new ArchiveResult(0, 0, 0);
+        }
+        long rawBytes = LogSegment.write(path, logs);
+        LogSegment segment = LogSegment.open(path);
+        segments.add(segment);
+        return new ArchiveResult(logs.size(), rawBytes, segment.fileSize());
+    }
+
+    /**
+     * 아카이브된 가장 큰 id, 이보다 큰 id는 아카이브에 없다
+     */
+    public long maxId() {
+        return segments.stream().mapToLong(LogSegment::lastId).max().orElse(-1);
+    }
+
+    public boolean contains(long id) {
+        return id <= maxId() && findById(id).isPresent();
+    }
+
+    public Optional<Log> findById(long id) {
+        for (LogSegment segment : segments) {
+            Optional<Log> found = segment.findById(id);
+            if (found.isPresent()) {
+                return found;
+            }
+        }
+        return Optional.empty();
+    }
+
+    public Stream<Log> stream() {
+        return segments.stream().flatMap(LogSegment::stream);
+    }
+
+    public long storageBytes() {
+        return segments.stream().mapToLong(LogSegment::fileSize).sum();
+    }
+
+    public static class ArchiveResult {
+        private final int count;
+        private final long rawBytes;
+        private final long archivedBytes;
+
+        ArchiveResult(int count, long rawBytes, long archivedBytes) {
+            this.count = count;
+            this.rawBytes = rawBytes;
+            this.archivedBytes = archivedBytes;
+        }
+
+        ArchiveResult plus(ArchiveResult other) {
+            return new ArchiveResult(count + other.count, rawBytes + other.rawBytes, archivedBytes + other.archivedBytes);
+        }
+
+        public int getCount() {
+            return count;
+        }
+
+        public long getRawBytes() {
+            return rawBytes;
+        }
+
+        public long getArchivedBytes() {
+            return archivedBytes;
+        }
+    }
+}
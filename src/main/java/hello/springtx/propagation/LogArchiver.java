@@ -0,0 +1,100 @@
+package hello.springtx.propagation;
+
+import hello.springtx.propagation.LogArchive.ArchiveResult;
+import hello.springtx.tx.TransactionDeadline;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.stream.Collectors;
+
+@Slf4j
+@Component
+public class LogArchiver {
+
+    //IN 절 바인드 파라미터 수 제한
+    private static final int DELETE_CHUNK_SIZE = 1000;
+
+    private final EntityManager em;
+
+    private final LogArchive logArchive;
+
+    private final TransactionTemplate txTemplate;
+
+    private final int batchSize;
+
+    public LogArchiver(EntityManager em, LogArchive logArchive, PlatformTransactionManager transactionManager,
+                       @Value("${log.archive.batch-size:10000}") int batchSize) {
+        this.em = em;
+        this.logArchive = logArchive;
+        this.txTemplate = new TransactionTemplate(transactionManager);
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * age보다 오래된 Log를 id 순으로 batchSize개씩 세그먼트 파일로 옮기고 테이블에서 지운다
+     * 배치마다 세그먼트 하나, 트랜잭션 하나라서 한번에 읽는 로그와 세그먼트 크기가 batchSize로 제한된다
+     * 세그먼트 파일을 먼저 쓰고 delete 하므로 커밋이 실패해도 로그가 사라지지는 않고(핫 테이블이 먼저 조회됨),
+     * 다음 실행에서 이미 아카이브에 있는 로그는 다시 쓰지 않고 지우기만 한다
+     */
+    public ArchiveResult archive(Duration age) {
+        LocalDateTime cutoff = LocalDateTime.now().minus(age);
+        ArchiveResult total = new ArchiveResult(0, 0, 0);
+        long afterId = Long.MIN_VALUE;
+        while (true) {
+            long from = afterId;
+            //백그라운드 작업이라 기본 트랜잭션 데드라인을 받지 않는다
+            Batch batch = TransactionDeadline.withoutDefault(() -> txTemplate.execute(status -> archiveBatch(cutoff, from)));
+            if (batch.lastId == null) {
+                break;
+            }
+            total = total.plus(batch.result);
+            afterId = batch.lastId;
+        }
+
+        log.info("log 아카이브 count={} rawBytes={} archivedBytes={}",
+                total.getCount(), total.getRawBytes(), total.getArchivedBytes());
+        return total;
+    }
+
+    private Batch archiveBatch(LocalDateTime cutoff, long afterId) {
+        List<Log> logs = em.createQuery("select l from Log l where l.id > :afterId and l.createdAt < :cutoff order by l.id", Log.class)
+                .setParameter("afterId", afterId)
+                .setParameter("cutoff", cutoff)
+                .setMaxResults(batchSize)
+                .getResultList();
+        if (logs.isEmpty()) {
+            return new Batch(null, null);
+        }
+
+        //지난 실행에서 세그먼트는 썼지만 delete가 커밋되지 않은 로그는 다시 쓰지 않는다
+        List<Log> fresh = logs.stream()
+                .filter(l -> !logArchive.contains(l.getId()))
+                .collect(Collectors.toList());
+        ArchiveResult result = fresh.isEmpty() ? new ArchiveResult(0, 0, 0) : logArchive.append(fresh);
+
+        List<Long> ids = logs.stream().map(Log::getId).collect(Collectors.toList());
+        for (int i = 0; i < ids.size(); i += DELETE_CHUNK_SIZE) {
+            em.createQuery("delete from Log l where l.id in :ids")
+                    .setParameter("ids", ids.subList(i, Math.min(i + DELETE_CHUNK_SIZE, ids.size())))
+                    .executeUpdate();
+        }
+        return new Batch(ids.get(ids.size() - 1), result);
+    }
+
+    private static class Batch {
+        private final Long lastId;
+        private final ArchiveResult result;
+
+        Batch(Long lastId, ArchiveResult result) {
+            this.lastId = lastId;
+            this.result = result;
+        }
+    }
+}
@@ -0,0 +1,287 @@
+package hello.springtx.propagation;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.TransactionException;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+
+/**
+ * LogRepository.save 앞단 서킷 브레이커
+ * 최근 windowSize번 호출 중 인프라 장애(DataAccessException, 커넥션/트랜잭션 예외) 비율이 failureRateThreshold 이상이면 OPEN,
+ * OPEN이면 트랜잭션/커넥션 없이 바로 거절하고(spillFile이 있으면 파일에 남김),
+ * openDuration이 지나면 HALF_OPEN으로 halfOpenCalls번 시험 호출해서 모두 성공하면 CLOSED로 돌아간다
+ * HALF_OPEN에서 CLOSED로 돌아가면 파일에 남긴 로그를 replayExecutor에서 다시 저장한다
+ */
+@Slf4j
+@Component
+public class LogCircuitBreaker {
+
+    public enum State {CLOSED, OPEN, HALF_OPEN}
+
+    private final LogRepository logRepository;
+    private final LongSupplier clock;
+
+    private final boolean[] window;
+    private final int minimumCalls;
+    private final int failureRateThreshold;
+    private final long openDurationNanos;
+    private final int halfOpenCalls;
+    private final Path spillFile;
+    private final Executor replayExecutor;
+    //파일 I/O는 synchronized 대신 ReentrantLock, 가상 쓰레드가 I/O 중에 캐리어 쓰레드를 묶지 않는다
+    private final ReentrantLock spillLock = new ReentrantLock();
+
+    private State state = State.CLOSED;
+    private int windowIndex;
+    private int windowCount;
+    private int windowFailures;
+    private long openedAt;
+    private int halfOpenPermits;
+    private int halfOpenSuccesses;
+    private long rejected;
+
+    @Autowired
+    public LogCircuitBreaker(LogRepository logRepository,
+                             @Value("${log.breaker.window-size:50}") int windowSize,
+                             @Value("${log.breaker.minimum-calls:20}") int minimumCalls,
+                             @Value("${log.breaker.failure-rate-threshold:50}") int failureRateThreshold,
+                             @Value("${log.breaker.open-duration-ms:10000}") long openDurationMs,
+                             @Value("${log.breaker.half-open-calls:3}") int halfOpenCalls,
+                             @Value("${log.breaker.spill-file:}") String spillFile) {
+        this(logRepository, windowSize, minimumCalls, failureRateThreshold, openDurationMs, halfOpenCalls,
+                spillFile.isEmpty() ? null : Paths.get(spillFile), System::nanoTime,
+                Executors.newSingleThreadExecutor(runnable -> {
+                    Thread thread = new Thread(runnable, "log-spill-replay");
+                    thread.setDaemon(true);
+                    return thread;
+                }));
+    }
+
+    LogCircuitBreaker(LogRepository logRepository, int windowSize, int minimumCalls, int failureRateThreshold,
+                      long openDurationMs, int halfOpenCalls, Path spillFile, LongSupplier clock,
+                      Executor replayExecutor) {
+        this.logRepository = logRepository;
+        this.window = new boolean[windowSize];
+        this.minimumCalls = Math.min(minimumCalls, windowSize);
+        this.failureRateThreshold = failureRateThreshold;
+        this.openDurationNanos = TimeUnit.MILLISECONDS.toNanos(openDurationMs);
+        this.halfOpenCalls = halfOpenCalls;
+        this.spillFile = spillFile;
+        this.clock = clock;
+        this.replayExecutor = replayExecutor;
+    }
+
+    @PreDestroy
+    void close() {
+        if (replayExecutor instanceof ExecutorService) {
+            ((ExecutorService) replayExecutor).shutdown();
+        }
+    }
+
+    /**
+     * 거절되면 LogCircuitOpenException, 저장 실패는 LogRepository 예외를 그대로 던진다
+     */
+    public void save(Log logMessage) {
+        if (!acquirePermission()) {
+            spill(logMessage);
+            throw new LogCircuitOpenException("log 저장 서킷이 열려 있습니다");
+        }
+
+        try {
+            logRepository.save(logMessage);
+        } catch (RuntimeException e) {
+            //"로그예외" 같은 업무 예외는 DB까지는 정상으로 다녀온 것이라 실패로 세지 않는다
+            if (onResult(!isInfrastructureFailure(e))) {
+                replayLater();
+            }
+            throw e;
+        }
+        if (onResult(true)) {
+            replayLater();
+        }
+    }
+
+    //호출한 쓰레드가 재저장을 기다리지 않도록 replayExecutor에 넘긴다
+    private void replayLater() {
+        if (spillFile == null) {
+            return;
+        }
+        replayExecutor.execute(() -> {
+            try {
+                replaySpilled();
+            } catch (RuntimeException e) {
+                log.warn("spill 로그 재저장 실패 path={}", spillFile, e);
+            }
+        });
+    }
+
+    //DB/커넥션/트랜잭션 인프라 장애만 실패율에 넣는다
+    static boolean isInfrastructureFailure(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof DataAccessException || cause instanceof TransactionException
+                    || cause instanceof SQLException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    public synchronized long getRejected() {
+        return rejected;
+    }
+
+    /**
+     * 서킷이 닫힌 뒤 파일에 남겨둔 로그를 다시 저장한다, HALF_OPEN에서 CLOSED로 돌아갈 때 자동으로 호출된다
+     * 거절되거나 인프라 장애로 실패한 항목은 파일에 다시 남는다, 업무 예외("로그예외")는 다시 해도 실패하므로 버린다
+     * @return 저장에 성공한 개수
+     */
+    public int replaySpilled() {
+        List<String> lines;
+        spillLock.lock();
+        try {
+            if (spillFile == null || !Files.exists(spillFile)) {
+                return 0;
+            }
+            lines = Files.readAllLines(spillFile, StandardCharsets.UTF_8);
+            Files.delete(spillFile);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            spillLock.unlock();
+        }
+
+        int replayed = 0;
+        for (String line : lines) {
+            Log logMessage = new Log(new String(Base64.getDecoder().decode(line), StandardCharsets.UTF_8));
+            try {
+                save(logMessage);
+                replayed++;
+            } catch (LogCircuitOpenException e) {
+                //save에서 이미 파일에 다시 남겼다
+            } catch (RuntimeException e) {
+                if (isInfrastructureFailure(e)) {
+                    spill(logMessage);
+                } else {
+                    log.info("spill 로그 재저장 실패, 버립니다 message={}", logMessage.getMessage(), e);
+                }
+            }
+        }
+        log.info("spill 로그 재저장 replayed={} total={}", replayed, lines.size());
+        return replayed;
+    }
+
+    private synchronized boolean acquirePermission() {
+        if (state == State.OPEN) {
+            if (clock.getAsLong() - openedAt < openDurationNanos) {
+                rejected++;
+                return false;
+            }
+            log.info("log 서킷 HALF_OPEN");
+            state = State.HALF_OPEN;
+            halfOpenPermits = halfOpenCalls;
+            halfOpenSuccesses = 0;
+        }
+        if (state == State.HALF_OPEN) {
+            if (halfOpenPermits == 0) {
+                rejected++;
+                return false;
+            }
+            halfOpenPermits--;
+        }
+        return true;
+    }
+
+    /**
+     * @return 이번 결과로 HALF_OPEN에서 CLOSED가 됐으면 true
+     */
+    private synchronized boolean onResult(boolean success) {
+        if (state == State.HALF_OPEN) {
+            if (!success) {
+                open();
+            } else if (++halfOpenSuccesses == halfOpenCalls) {
+                log.info("log 서킷 CLOSED");
+                state = State.CLOSED;
+                resetWindow();
+                return true;
+            }
+            return false;
+        }
+        if (state == State.OPEN) {
+            return false;
+        }
+
+        //링 버퍼에 결과를 기록하면서 실패 수를 같이 맞춘다
+        if (windowCount == window.length) {
+            if (window[windowIndex]) {
+                windowFailures--;
+            }
+        } else {
+            windowCount++;
+        }
+        window[windowIndex] = !success;
+        if (!success) {
+            windowFailures++;
+        }
+        windowIndex = (windowIndex + 1) % window.length;
+
+        if (windowCount >= minimumCalls && windowFailures * 100 >= failureRateThreshold * windowCount) {
+            open();
+        }
+        return false;
+    }
+
+    private void open() {
+        log.info("log 서킷 OPEN failures={} calls={}", windowFailures, windowCount);
+        state = State.OPEN;
+        openedAt = clock.getAsLong();
+        resetWindow();
+    }
+
+    private void resetWindow() {
+        windowIndex = 0;
+        windowCount = 0;
+        windowFailures = 0;
+        Arrays.fill(window, false);
+    }
+
+    private void spill(Log logMessage) {
+        if (spillFile == null) {
+            return;
+        }
+        String line = Base64.getEncoder().encodeToString(logMessage.getMessage().getBytes(StandardCharsets.UTF_8));
+        spillLock.lock();
+        try {
+            Files.write(spillFile, List.of(line), StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        } catch (IOException e) {
+            log.warn("spill 파일 기록 실패 path={}", spillFile, e);
+        } finally {
+            spillLock.unlock();
+        }
+    }
+}
@@ -0,0 +1,7 @@
+package hello.springtx.propagation;
+
+public class LogCircuitOpenException extends RuntimeException {
+    public LogCircuitOpenException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,285 @@
+package hello.springtx.propagation;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
+
+/**
+ * Log 메시지 부분 문자열 검색용 메모리 trigram 역색인
+ * 메시지는 들고 있지 않고 문서 번호(int) posting list와 문서 번호 -> Log id 배열만 둔다
+ * trigram -> posting list는 long 키 open addressing 해시라 키를 박싱하지 않는다
+ * 검색 결과는 후보라서 호출하는 쪽에서 읽은 메시지로 한번 더 확인해야 한다
+ */
+@Slf4j
+@Component
+public class LogMessageIndex {
+
+    private static final int GRAM = 3;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final GramTable postings = new GramTable();
+
+    private long[] ids = new long[64];
+    private int size;
+
+    //ids[0, rebuilt)는 rebuild로 채운 구간, rebuild 중에 커밋된 로그가 두번 들어오지 않도록 여기서 찾는다
+    private int rebuilt;
+    private long rebuiltMaxId = Long.MIN_VALUE;
+    private boolean rebuiltSorted = true;
+
+    public static boolean isSearchable(String keyword) {
+        return keyword != null && keyword.length() >= GRAM;
+    }
+
+    public void add(Log logMessage) {
+        if (logMessage.getId() == null || logMessage.getMessage() == null) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            if (isRebuilt(logMessage.getId())) {
+                return;
+            }
+            addInternal(logMessage.getId(), logMessage.getMessage());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 기동 시점에 DB를 스트리밍하면서 색인을 다시 만든다
+     * logs 안에 같은 id가 두번 나오지 않는 것은 호출하는 쪽(LogRepository)이 보장한다
+     */
+    public void rebuild(Stream<Log> logs) {
+        lock.writeLock().lock();
+        try {
+            postings.clear();
+            ids = new long[64];
+            size = 0;
+            rebuiltMaxId = Long.MIN_VALUE;
+            rebuiltSorted = true;
+            logs.filter(l -> l.getId() != null && l.getMessage() != null)
+                    .forEach(l -> {
+                        if (l.getId() <= rebuiltMaxId) {
+                            rebuiltSorted = false;
+                        }
+                        rebuiltMaxId = Math.max(rebuiltMaxId, l.getId());
+                        addInternal(l.getId(), l.getMessage());
+                    });
+            rebuilt = size;
+            log.info("log index rebuild 완료 size={} grams={}", size, postings.size());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    //rebuild 이후 새로 커밋된 로그는 대부분 rebuiltMaxId보다 커서 바로 통과한다
+    private boolean isRebuilt(long id) {
+        if (id > rebuiltMaxId) {
+            return false;
+        }
+        if (rebuiltSorted) {
+            return Arrays.binarySearch(ids, 0, rebuilt, id) >= 0;
+        }
+        for (int i = 0; i < rebuilt; i++) {
+            if (ids[i] == id) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * keyword를 포함할 수 있는 Log id 후보, 3글자 미만이면 색인으로 찾을 수 없어 비어 있다
+     */
+    public List<Long> search(String keyword) {
+        if (!isSearchable(keyword)) {
+            return List.of();
+        }
+        lock.readLock().lock();
+        try {
+            //가장 짧은 posting list부터 교집합
+            long[] grams = grams(keyword);
+            IntPostings[] lists = new IntPostings[grams.length];
+            for (int i = 0; i < grams.length; i++) {
+                IntPostings list = postings.get(grams[i]);
+                if (list == null) {
+                    return List.of();
+                }
+                lists[i] = list;
+            }
+            Arrays.sort(lists, (a, b) -> Integer.compare(a.size, b.size));
+
+            int[] candidates = Arrays.copyOf(lists[0].docs, lists[0].size);
+            int count = candidates.length;
+            for (int i = 1; i < lists.length && count > 0; i++) {
+                count = intersect(candidates, count, lists[i]);
+            }
+
+            List<Long> result = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                result.add(ids[candidates[i]]);
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void addInternal(long id, String message) {
+        if (size == ids.length) {
+            ids = Arrays.copyOf(ids, size * 2);
+        }
+        int doc = size++;
+        ids[doc] = id;
+
+        for (long gram : grams(message)) {
+            postings.getOrCreate(gram).add(doc);
+        }
+    }
+
+    //정렬된 두 리스트의 교집합을 candidates 앞쪽에 덮어쓴다
+    private static int intersect(int[] candidates, int count, IntPostings other) {
+        int i = 0, j = 0, out = 0;
+        while (i < count && j < other.size) {
+            int a = candidates[i];
+            int b = other.docs[j];
+            if (a == b) {
+                candidates[out++] = a;
+                i++;
+                j++;
+            } else if (a < b) {
+                i++;
+            } else {
+                j++;
+            }
+        }
+        return out;
+    }
+
+    //char 3개(16bit씩)를 long 하나로 묶는다, 중복 gram은 제거
+    static long[] grams(String text) {
+        if (text.length() < GRAM) {
+            return new long[0];
+        }
+        long[] grams = new long[text.length() - GRAM + 1];
+        for (int i = 0; i < grams.length; i++) {
+            grams[i] = ((long) text.charAt(i) << 32) | ((long) text.charAt(i + 1) << 16) | text.charAt(i + 2);
+        }
+        return Arrays.stream(grams).distinct().toArray();
+    }
+
+    /**
+     * 문서 번호는 증가하는 순서로만 들어오므로 항상 정렬된 상태를 유지한다
+     */
+    static class IntPostings {
+        int[] docs = new int[4];
+        int size;
+
+        void add(int doc) {
+            if (size > 0 && docs[size - 1] == doc) {
+                return;
+            }
+            if (size == docs.length) {
+                docs = Arrays.copyOf(docs, size + (size >> 1) + 1);
+            }
+            docs[size++] = doc;
+        }
+    }
+
+    /**
+     * gram(long) -> posting list, 선형 탐사 open addressing
+     * gram은 char 3개라 상위 16bit가 항상 0이므로 -1을 빈 칸 표시로 쓴다
+     */
+    static class GramTable {
+        private static final long EMPTY = -1L;
+
+        private long[] keys;
+        private IntPostings[] values;
+        private int size;
+
+        GramTable() {
+            clear();
+        }
+
+        void clear() {
+            keys = new long[1024];
+            Arrays.fill(keys, EMPTY);
+            values = new IntPostings[1024];
+            size = 0;
+        }
+
+        int size() {
+            return size;
+        }
+
+        IntPostings get(long key) {
+            int slot = slot(key, keys.length);
+            while (keys[slot] != EMPTY) {
+                if (keys[slot] == key) {
+                    return values[slot];
+                }
+                slot = (slot + 1) & (keys.length - 1);
+            }
+            return null;
+        }
+
+        IntPostings getOrCreate(long key) {
+            IntPostings found = get(key);
+            if (found != null) {
+                return found;
+            }
+            //load factor 0.5
+            if ((size + 1) * 2 > keys.length) {
+                resize();
+            }
+            IntPostings created = new IntPostings();
+            put(keys, values, key, created);
+            size++;
+            return created;
+        }
+
+        private void resize() {
+            long[] newKeys = new long[keys.length * 2];
+            Arrays.fill(newKeys, EMPTY);
+            IntPostings[] newValues = new IntPostings[newKeys.length];
+            for (int i = 0; i < keys.length; i++) {
+                if (keys[i] != EMPTY) {
+                    put(newKeys, newValues, keys[i], values[i]);
+                }
+            }
+            keys = newKeys;
+            values = newValues;
+        }
+
+        private static void put(long[] keys, IntPostings[] values, long key, IntPostings value) {
+            int slot = slot(key, keys.length);
+            while (keys[slot] != EMPTY) {
+                slot = (slot + 1) & (keys.length - 1);
+            }
+            keys[slot] = key;
+            values[slot] = value;
+        }
+
+        private static int slot(long key, int capacity) {
+            long hash = key * 0x9E3779B97F4A7C15L;
+            return (int) (hash >>> 32) & (capacity - 1);
+        }
+    }
+}
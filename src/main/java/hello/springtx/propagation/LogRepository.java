@@ -2,25 +2,52 @@ package hello.springtx.propagation;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Repository;
 import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Slf4j
 @Repository
 @RequiredArgsConstructor
 public class LogRepository {
 
+    //IN 절 바인드 파라미터 수 제한
+    private static final int IN_CHUNK_SIZE = 1000;
+
     private final EntityManager em;
 
+    private final LogMessageIndex logMessageIndex;
+
+    private final LogArchive logArchive;
+
     @Transactional(propagation = Propagation.REQUIRES_NEW)
     public void save(Log logMessage) {
         log.info("log 저장");
         em.persist(logMessage);
 
+        //롤백된 로그가 색인에 남지 않도록 커밋이 끝난 뒤에 색인한다
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                logMessageIndex.add(logMessage);
+            }
+        });
+
         if (logMessage.getMessage().contains("로그예외")) {
             log.info("log 저장시 예외 발생");
             throw new RuntimeException("예외 발생");
@@ -28,8 +55,114 @@ public class LogRepository {
     }
 
     public Optional<Log> find(String message) {
-        return em.createQuery("select l from Log l where l.message = :message", Log.class)
+        Optional<Log> found = em.createNamedQuery("Log.findByMessage", Log.class)
                 .setParameter("message", message)
                 .getResultList().stream().findAny();
+        if (found.isPresent()) {
+            return found;
+        }
+        return findArchived(message);
+    }
+
+    //핫 테이블에 없으면 색인으로 후보 id를 찾고 아카이브에서 읽는다
+    private Optional<Log> findArchived(String message) {
+        if (!LogMessageIndex.isSearchable(message)) {
+            return logArchive.stream()
+                    .filter(l -> message.equals(l.getMessage()))
+                    .findAny();
+        }
+        return logMessageIndex.search(message).stream()
+                .map(logArchive::findById)
+                .flatMap(Optional::stream)
+                .filter(l -> l.getMessage().equals(message))
+                .findAny();
+    }
+
+    /**
+     * messages 중 아카이브에 로그가 있는 것, 핫 테이블은 보지 않으므로 DB를 호출하지 않는다
+     * 색인으로 찾을 수 없는 짧은 메시지는 아카이브를 한번만 훑어서 같이 찾는다
+     */
+    public Set<String> findArchivedMessages(Collection<String> messages) {
+        Set<String> found = new HashSet<>();
+        Set<String> scan = new HashSet<>();
+        for (String message : messages) {
+            if (message == null) {
+                continue;
+            }
+            if (!LogMessageIndex.isSearchable(message)) {
+                scan.add(message);
+            } else if (findArchived(message).isPresent()) {
+                found.add(message);
+            }
+        }
+        if (!scan.isEmpty()) {
+            logArchive.stream()
+                    .map(Log::getMessage)
+                    .filter(scan::contains)
+                    .forEach(found::add);
+        }
+        return found;
+    }
+
+    //like '%keyword%' 풀스캔 대신 메모리 trigram 색인으로 후보 id를 찾고 id로 조회
+    //색인은 후보만 주므로 읽은 메시지로 다시 거른다
+    public List<Log> findContaining(String keyword) {
+        if (keyword == null || keyword.isEmpty()) {
+            return List.of();
+        }
+        if (!LogMessageIndex.isSearchable(keyword)) {
+            return scanContaining(keyword);
+        }
+        List<Long> ids = logMessageIndex.search(keyword);
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        List<Log> logs = new ArrayList<>(ids.size());
+        for (int from = 0; from < ids.size(); from += IN_CHUNK_SIZE) {
+            logs.addAll(em.createQuery("select l from Log l where l.id in :ids", Log.class)
+                    .setParameter("ids", ids.subList(from, Math.min(from + IN_CHUNK_SIZE, ids.size())))
+                    .getResultList());
+        }
+        if (logs.size() < ids.size()) {
+            Set<Long> hot = logs.stream().map(Log::getId).collect(Collectors.toSet());
+            ids.stream()
+                    .filter(id -> !hot.contains(id))
+                    .map(logArchive::findById)
+                    .flatMap(Optional::stream)
+                    .forEach(logs::add);
+        }
+        return logs.stream()
+                .filter(l -> l.getMessage().contains(keyword))
+                .sorted(Comparator.comparing(Log::getId))
+                .collect(Collectors.toList());
+    }
+
+    //trigram이 없는 짧은 키워드는 색인으로 찾을 수 없어 핫 테이블 like와 아카이브 스캔으로 찾는다
+    private List<Log> scanContaining(String keyword) {
+        List<Log> logs = new ArrayList<>(em.createQuery("select l from Log l where l.message like :keyword order by l.id", Log.class)
+                .setParameter("keyword", "%" + keyword + "%")
+                .getResultList());
+        Set<Long> hot = logs.stream().map(Log::getId).collect(Collectors.toSet());
+        logArchive.stream()
+                .filter(l -> !hot.contains(l.getId()) && l.getMessage().contains(keyword))
+                .forEach(logs::add);
+        logs.sort(Comparator.comparing(Log::getId));
+        return logs;
+    }
+
+    //@PostConstruct에서는 트랜잭션이 적용되지 않으므로 ApplicationReadyEvent 시점에 색인을 만든다
+    //아카이브된 로그도 substring 검색이 되도록 같이 색인한다
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional(readOnly = true)
+    public void rebuildIndex() {
+        try (Stream<Log> logs = em.createQuery("select l from Log l order by l.id", Log.class)
+                .setHint("org.hibernate.fetchSize", 1000)
+                .getResultStream()) {
+            //아카이브 후 delete 커밋 전이면 같은 로그가 핫 테이블에도 남아 있으므로 한번만 색인한다
+            long archivedMaxId = logArchive.maxId();
+            Stream<Log> hot = logs.peek(em::detach)
+                    .filter(l -> l.getId() > archivedMaxId || !logArchive.contains(l.getId()));
+            logMessageIndex.rebuild(Stream.concat(logArchive.stream(), hot));
+        }
     }
 }
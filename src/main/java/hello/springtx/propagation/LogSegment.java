@@ -0,0 +1,298 @@
+package hello.springtx.propagation;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * 한번 쓰면 바뀌지 않는 Log 아카이브 세그먼트 파일
+ * [압축 블록...][sparse index: firstId, offset, length, rawLength ...][블록 수][index 시작 offset][MAGIC]
+ * 블록은 id 순으로 정렬된 레코드 BLOCK_SIZE개를 Deflater로 압축한 것이고,
+ * 읽을 때는 블록 영역을 mmap 하고 블록 첫 id만 메모리에 들고 있다가 이진 탐색으로 블록 하나만 푼다
+ * 세그먼트는 배치 하나(log.archive.batch-size)라 보통 매핑 하나지만, MAX_REGION을 넘으면 블록 경계에서 나눠 여러 번 매핑한다
+ */
+class LogSegment implements Closeable {
+
+    static final int BLOCK_SIZE = 64;
+
+    private static final int MAGIC = 0x4C4F4753; //"LOGS"
+    private static final int FOOTER_SIZE = Integer.BYTES + Long.BYTES + Integer.BYTES;
+    private static final int INDEX_ENTRY_SIZE = Long.BYTES + Long.BYTES + Integer.BYTES + Integer.BYTES;
+
+    //MappedByteBuffer 위치가 int라 한 번에 매핑하는 최대 크기
+    static final long MAX_REGION = Integer.MAX_VALUE;
+
+    //createdAt이 없는 로그, epoch millis로 나올 수 없는 값
+    private static final long NO_CREATED_AT = Long.MIN_VALUE;
+
+    private final Path path;
+    private final long fileSize;
+    private final long[] firstIds;
+    private final long[] offsets;
+    private final int[] lengths;
+    private final int[] rawLengths;
+    //블록 i는 regions[blockRegions[i]]의 offsets[i] - regionStarts[blockRegions[i]] 위치에 있다
+    private final MappedByteBuffer[] regions;
+    private final long[] regionStarts;
+    private final int[] blockRegions;
+    private long lastId;
+
+    private LogSegment(Path path, long fileSize, long[] firstIds, long[] offsets, int[] lengths, int[] rawLengths,
+                       MappedByteBuffer[] regions, long[] regionStarts, int[] blockRegions) {
+        this.path = path;
+        this.fileSize = fileSize;
+        this.firstIds = firstIds;
+        this.offsets = offsets;
+        this.lengths = lengths;
+        this.rawLengths = rawLengths;
+        this.regions = regions;
+        this.regionStarts = regionStarts;
+        this.blockRegions = blockRegions;
+    }
+
+    /**
+     * id 순으로 정렬된 logs를 세그먼트 파일로 쓴다. 임시 파일에 쓰고 fsync 후 이름을 바꾼다
+     * @return 압축 전 레코드 바이트 수
+     */
+    static long write(Path path, List<Log> logs) {
+        Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        long rawBytes = 0;
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            int blocks = (logs.size() + BLOCK_SIZE - 1) / BLOCK_SIZE;
+            ByteBuffer index = ByteBuffer.allocate(blocks * INDEX_ENTRY_SIZE + FOOTER_SIZE);
+            Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+            long offset = 0;
+            try {
+                for (int from = 0; from < logs.size(); from += BLOCK_SIZE) {
+                    List<Log> block = logs.subList(from, Math.min(from + BLOCK_SIZE, logs.size()));
+                    byte[] raw = encode(block);
+                    byte[] compressed = deflate(deflater, raw);
+                    rawBytes += raw.length;
+
+                    index.putLong(block.get(0).getId()).putLong(offset).putInt(compressed.length).putInt(raw.length);
+                    offset += writeFully(channel, ByteBuffer.wrap(compressed));
+                }
+            } finally {
+                deflater.end();
+            }
+            index.putInt(blocks).putLong(offset).putInt(MAGIC).flip();
+            writeFully(channel, index);
+            channel.force(true);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        try {
+            Files.move(tmp, path, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return rawBytes;
+    }
+
+    //매핑은 채널을 닫아도 남으므로 열 때만 채널을 쓴다
+    static LogSegment open(Path path) {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long fileSize = channel.size();
+            ByteBuffer footer = readFully(channel, fileSize - FOOTER_SIZE, FOOTER_SIZE);
+            int blocks = footer.getInt();
+            long indexOffset = footer.getLong();
+            if (footer.getInt() != MAGIC) {
+                throw new IllegalStateException("log 세그먼트 파일이 아닙니다. path=" + path);
+            }
+
+            ByteBuffer index = readFully(channel, indexOffset, blocks * INDEX_ENTRY_SIZE);
+            long[] firstIds = new long[blocks];
+            long[] offsets = new long[blocks];
+            int[] lengths = new int[blocks];
+            int[] rawLengths = new int[blocks];
+            for (int i = 0; i < blocks; i++) {
+                firstIds[i] = index.getLong();
+                offsets[i] = index.getLong();
+                lengths[i] = index.getInt();
+                rawLengths[i] = index.getInt();
+            }
+
+            //블록이 영역 경계에 걸치지 않도록 블록 단위로 영역을 나눈다
+            List<MappedByteBuffer> regions = new ArrayList<>();
+            List<Long> regionStarts = new ArrayList<>();
+            int[] blockRegions = new int[blocks];
+            int from = 0;
+            while (from < blocks) {
+                long start = offsets[from];
+                int to = from;
+                while (to < blocks && offsets[to] + lengths[to] - start <= MAX_REGION) {
+                    blockRegions[to] = regions.size();
+                    to++;
+                }
+                long end = offsets[to - 1] + lengths[to - 1];
+                regions.add(channel.map(FileChannel.MapMode.READ_ONLY, start, end - start));
+                regionStarts.add(start);
+                from = to;
+            }
+
+            LogSegment segment = new LogSegment(path, fileSize, firstIds, offsets, lengths, rawLengths,
+                    regions.toArray(new MappedByteBuffer[0]),
+                    regionStarts.stream().mapToLong(Long::longValue).toArray(), blockRegions);
+            List<Log> last = blocks == 0 ? List.of() : segment.readBlock(blocks - 1);
+            segment.lastId = last.isEmpty() ? -1 : last.get(last.size() - 1).getId();
+            return segment;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    Optional<Log> findById(long id) {
+        if (firstIds.length == 0 || id < firstIds[0] || id > lastId) {
+            return Optional.empty();
+        }
+        int block = Arrays.binarySearch(firstIds, id);
+        if (block < 0) {
+            block = -block - 2;
+        }
+        return readBlock(block).stream().filter(l -> l.getId() == id).findAny();
+    }
+
+    //블록 단위로 풀면서 흘려보낸다
+    Stream<Log> stream() {
+        return IntStream.range(0, firstIds.length)
+                .mapToObj(this::readBlock)
+                .flatMap(List::stream);
+    }
+
+    long fileSize() {
+        return fileSize;
+    }
+
+    long lastId() {
+        return lastId;
+    }
+
+    Path path() {
+        return path;
+    }
+
+    //매핑은 GC될 때 풀린다, 참조만 끊는다
+    @Override
+    public void close() {
+        Arrays.fill(regions, null);
+    }
+
+    private List<Log> readBlock(int block) {
+        MappedByteBuffer region = regions[blockRegions[block]];
+        if (region == null) {
+            throw new IllegalStateException("닫힌 log 세그먼트입니다. path=" + path);
+        }
+        //mmap 버퍼는 여러 쓰레드가 같이 읽으므로 position을 공유하지 않게 복제해서 읽는다
+        ByteBuffer slice = region.duplicate();
+        slice.position((int) (offsets[block] - regionStarts[blockRegions[block]]));
+        byte[] compressed = new byte[lengths[block]];
+        slice.get(compressed);
+
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(compressed);
+            byte[] raw = new byte[rawLengths[block]];
+            int read = 0;
+            while (read < raw.length && !inflater.finished()) {
+                read += inflater.inflate(raw, read, raw.length - read);
+            }
+            return decode(raw);
+        } catch (DataFormatException e) {
+            throw new IllegalStateException("log 세그먼트 블록이 손상되었습니다. path=" + path, e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    private static byte[] encode(List<Log> block) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(block.size());
+            for (Log log : block) {
+                out.writeLong(log.getId());
+                out.writeUTF(log.getMessage() == null ? "" : log.getMessage());
+                out.writeLong(log.getCreatedAt() == null
+                        ? NO_CREATED_AT : log.getCreatedAt().toInstant(ZoneOffset.UTC).toEpochMilli());
+            }
+        }
+        return bytes.toByteArray();
+    }
+
+    private static List<Log> decode(byte[] raw) {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(raw))) {
+            int count = in.readInt();
+            List<Log> logs = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                Log log = new Log();
+                log.setId(in.readLong());
+                log.setMessage(in.readUTF());
+                long createdAt = in.readLong();
+                log.setCreatedAt(createdAt == NO_CREATED_AT
+                        ? null : LocalDateTime.ofInstant(Instant.ofEpochMilli(createdAt), ZoneOffset.UTC));
+                logs.add(log);
+            }
+            return logs;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static byte[] deflate(Deflater deflater, byte[] raw) {
+        deflater.reset();
+        deflater.setInput(raw);
+        deflater.finish();
+        ByteArrayOutputStream out = new ByteArrayOutputStream(raw.length / 2 + 16);
+        byte[] chunk = new byte[4096];
+        while (!deflater.finished()) {
+            int n = deflater.deflate(chunk);
+            out.write(chunk, 0, n);
+        }
+        return out.toByteArray();
+    }
+
+    //footer, index는 열 때 한 번만 읽는다
+    private static ByteBuffer readFully(FileChannel channel, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            int n = channel.read(buffer, position + buffer.position());
+            if (n < 0) {
+                throw new EOFException("log 세그먼트 파일이 잘렸습니다. position=" + position);
+            }
+        }
+        return buffer.flip();
+    }
+
+    private static int writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        int written = 0;
+        while (buffer.hasRemaining()) {
+            written += channel.write(buffer);
+        }
+        return written;
+    }
+}
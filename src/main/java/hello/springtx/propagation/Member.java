@@ -2,12 +2,27 @@ package hello.springtx.propagation;
 
 import lombok.Getter;
 import lombok.Setter;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.QueryHints;
 
+import javax.persistence.Cacheable;
 import javax.persistence.Entity;
 import javax.persistence.GeneratedValue;
 import javax.persistence.Id;
+import javax.persistence.NamedQuery;
+import javax.persistence.QueryHint;
 
+//named query는 기동 시점에 파싱/검증되고 쿼리 계획이 미리 만들어진다
+//username 조회 결과(id)는 쿼리 캐시, 엔티티는 2차 캐시에서 읽는다, member 테이블이 바뀌면 쿼리 캐시는 무효화된다
+@NamedQuery(name = "Member.findByUsername", query = "select m from Member m where m.username = :username",
+        hints = @QueryHint(name = QueryHints.CACHEABLE, value = "true"))
+@NamedQuery(name = "Member.findByUsernameStartingWith",
+        query = "select m from Member m where m.username like :prefix order by m.username")
+@NamedQuery(name = "Member.count", query = "select count(m) from Member m")
 @Entity
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
 @Getter
 @Setter
 public class Member {
@@ -1,29 +1,15 @@
 package hello.springtx.propagation;
 
-import lombok.RequiredArgsConstructor;
-import lombok.extern.slf4j.Slf4j;
-import org.springframework.stereotype.Repository;
-import org.springframework.transaction.annotation.Transactional;
-
-import javax.persistence.EntityManager;
+import java.util.List;
 import java.util.Optional;
 
-@Slf4j
-@Repository
-@RequiredArgsConstructor
-public class MemberRepository {
+public interface MemberRepository {
+
+    void save(Member member);
 
-    private final EntityManager em;
+    Optional<Member> find(String username);
 
-    @Transactional
-    public void save(Member member) {
-        log.info("member 저장");
-        em.persist(member);
-    }
+    List<Member> findByUsernameStartingWith(String prefix);
 
-    public Optional<Member> find(String username) {
-        return em.createQuery("select m from Member m where m.username = :username", Member.class)
-                .setParameter("username", username)
-                .getResultList().stream().findAny();
-    }
+    long count();
 }
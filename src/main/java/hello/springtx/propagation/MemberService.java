@@ -14,6 +14,8 @@ public class MemberService {
 
     private final LogRepository logRepository;
 
+    private final LogCircuitBreaker logCircuitBreaker;
+
     @Transactional
     public void joinV1(String username) {
         Member member = new Member(username);
@@ -38,8 +40,9 @@ public class MemberService {
         log.info("= memberRepository 호출 종료 =");
 
         log.info("= logRepository 호출 시작 =");
+        //로그 테이블이 계속 실패하면 서킷이 열려 REQUIRES_NEW 트랜잭션과 커넥션 획득 없이 바로 실패한다
         try {
-            logRepository.save(log1);
+            logCircuitBreaker.save(log1);
         } catch (RuntimeException e) {
             log.info("log 저장에 실패했습니다. log1Message={}", log1.getMessage());
             log.info("정상 흐름 반환");
@@ -0,0 +1,86 @@
+package hello.springtx.propagation;
+
+import com.zaxxer.hikari.HikariDataSource;
+import hello.springtx.tx.TransactionDeadline;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.DefaultTransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.function.Function;
+
+/**
+ * Member 샤드 하나, DataSource와 트랜잭션 매니저를 샤드마다 따로 가진다
+ */
+class MemberShard {
+
+    private final int index;
+    private final HikariDataSource dataSource;
+    private final DataSourceTransactionManager transactionManager;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    MemberShard(int index, String url, int poolSize) {
+        this.index = index;
+        this.dataSource = new HikariDataSource();
+        this.dataSource.setJdbcUrl(url);
+        this.dataSource.setMaximumPoolSize(poolSize);
+        this.dataSource.setPoolName("member-shard-" + index);
+        this.transactionManager = new DataSourceTransactionManager(dataSource);
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+
+        jdbcTemplate.execute("create table if not exists member (id bigint auto_increment primary key, username varchar(255))");
+        jdbcTemplate.execute("create index if not exists member_username on member(username)");
+    }
+
+    int getIndex() {
+        return index;
+    }
+
+    JdbcTemplate jdbc() {
+        return jdbcTemplate;
+    }
+
+    /**
+     * 쓰기 작업을 샤드 트랜잭션 안에서 실행한다
+     * 바깥 트랜잭션(JPA)이 있으면 샤드 트랜잭션을 열어 바깥 트랜잭션이 커밋될 때 같이 커밋하고, 롤백되면 같이 롤백한다
+     * 2PC가 아니라서 샤드 커밋 후 바깥 커밋이 실패하면 샤드에만 반영될 수 있다(best-effort 1PC)
+     */
+    <T> T write(Function<JdbcTemplate, T> work) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return transactionTemplate.execute(status -> work.apply(jdbcTemplate));
+        }
+
+        //이미 이 샤드 커넥션이 바인딩되어 있으면 같은 샤드 트랜잭션에 참여
+        if (!TransactionSynchronizationManager.hasResource(dataSource)) {
+            //바깥 트랜잭션의 남은 시간만큼만 기다린다
+            DefaultTransactionDefinition definition = new DefaultTransactionDefinition(TransactionDefinition.PROPAGATION_REQUIRED);
+            definition.setTimeout(TransactionDeadline.remainingSeconds());
+            TransactionStatus status = transactionManager.getTransaction(definition);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void beforeCommit(boolean readOnly) {
+                    //샤드 커밋이 실패하면 예외가 바깥 커밋까지 전파되어 바깥도 롤백된다
+                    transactionManager.commit(status);
+                }
+
+                @Override
+                public void afterCompletion(int completionStatus) {
+                    if (!status.isCompleted()) {
+                        transactionManager.rollback(status);
+                    }
+                }
+            });
+        }
+        return work.apply(jdbcTemplate);
+    }
+
+    void close() {
+        dataSource.close();
+    }
+}
@@ -0,0 +1,76 @@
+package hello.springtx.propagation;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * username 해시로 나눈 Member 샤드들
+ * 샤드 DataSource나 트랜잭션 매니저를 빈으로 등록하면 기본 DataSource/JPA 트랜잭션 매니저 자동 구성이 꺼지므로 여기서만 들고 있는다
+ */
+@Component
+@ConditionalOnProperty(name = "member.sharding.enabled", havingValue = "true")
+public class MemberShards {
+
+    private final List<MemberShard> shards = new ArrayList<>();
+
+    private final ExecutorService executor;
+
+    public MemberShards(@Value("${member.sharding.shards:4}") int count,
+                        @Value("${member.sharding.url:jdbc:h2:mem:member-shard-%d;DB_CLOSE_DELAY=-1}") String urlPattern,
+                        @Value("${member.sharding.pool-size:10}") int poolSize) {
+        for (int i = 0; i < count; i++) {
+            shards.add(new MemberShard(i, String.format(urlPattern, i), poolSize));
+        }
+        this.executor = Executors.newFixedThreadPool(count);
+    }
+
+    public int size() {
+        return shards.size();
+    }
+
+    MemberShard route(String username) {
+        return shards.get(shardIndex(username, shards.size()));
+    }
+
+    MemberShard get(int index) {
+        return shards.get(index);
+    }
+
+    //모든 샤드에 병렬로 조회하고 결과를 합친다
+    <T> List<T> scatter(Function<MemberShard, List<T>> query) {
+        List<CompletableFuture<List<T>>> futures = shards.stream()
+                .map(shard -> CompletableFuture.supplyAsync(() -> query.apply(shard), executor))
+                .collect(Collectors.toList());
+        return futures.stream()
+                .map(CompletableFuture::join)
+                .flatMap(List::stream)
+                .collect(Collectors.toList());
+    }
+
+    //String.hashCode는 비슷한 문자열끼리 하위 비트가 몰리므로 FNV-1a로 섞는다
+    static int shardIndex(String username, int count) {
+        int hash = 0x811c9dc5;
+        for (byte b : username.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b;
+            hash *= 0x01000193;
+        }
+        return Math.floorMod(hash, count);
+    }
+
+    @PreDestroy
+    void close() {
+        executor.shutdown();
+        shards.forEach(MemberShard::close);
+    }
+}
@@ -0,0 +1,76 @@
+package hello.springtx.propagation;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.stereotype.Repository;
+
+import java.sql.PreparedStatement;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+/**
+ * username 해시로 샤드를 골라 저장/조회, 여러 샤드에 걸친 조회는 병렬로 모은다
+ * id는 샤드 안의 id에 샤드 번호를 붙여 샤드끼리 겹치지 않게 한다
+ */
+@Slf4j
+@Repository
+@ConditionalOnProperty(name = "member.sharding.enabled", havingValue = "true")
+@RequiredArgsConstructor
+public class ShardedMemberRepository implements MemberRepository {
+
+    static final int SHARD_BITS = 10;
+
+    private final MemberShards shards;
+
+    @Override
+    public void save(Member member) {
+        MemberShard shard = shards.route(member.getUsername());
+        log.info("member 저장 shard={}", shard.getIndex());
+        long localId = shard.write(jdbc -> {
+            KeyHolder keyHolder = new GeneratedKeyHolder();
+            jdbc.update(con -> {
+                PreparedStatement ps = con.prepareStatement("insert into member(username) values(?)", new String[]{"id"});
+                ps.setString(1, member.getUsername());
+                return ps;
+            }, keyHolder);
+            return keyHolder.getKey().longValue();
+        });
+        member.setId(localId << SHARD_BITS | shard.getIndex());
+    }
+
+    @Override
+    public Optional<Member> find(String username) {
+        MemberShard shard = shards.route(username);
+        return shard.jdbc().query("select id, username from member where username = ?", mapper(shard), username)
+                .stream().findAny();
+    }
+
+    @Override
+    public List<Member> findByUsernameStartingWith(String prefix) {
+        return shards.scatter(shard -> shard.jdbc()
+                        .query("select id, username from member where username like ?", mapper(shard), prefix + "%"))
+                .stream()
+                .sorted(Comparator.comparing(Member::getUsername))
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public long count() {
+        return shards.scatter(shard -> List.of(shard.jdbc().queryForObject("select count(*) from member", Long.class)))
+                .stream().mapToLong(Long::longValue).sum();
+    }
+
+    private static RowMapper<Member> mapper(MemberShard shard) {
+        return (rs, rowNum) -> {
+            Member member = new Member(rs.getString("username"));
+            member.setId(rs.getLong("id") << SHARD_BITS | shard.getIndex());
+            return member;
+        };
+    }
+}
@@ -0,0 +1,77 @@
+package hello.springtx.reactive;
+
+import io.r2dbc.h2.H2ConnectionConfiguration;
+import io.r2dbc.h2.H2ConnectionFactory;
+import io.r2dbc.h2.H2ConnectionOption;
+import io.r2dbc.pool.ConnectionPool;
+import io.r2dbc.pool.ConnectionPoolConfiguration;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.r2dbc.connection.R2dbcTransactionManager;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import org.springframework.transaction.support.DefaultTransactionDefinition;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+
+/**
+ * reactive 가입 흐름용 r2dbc H2
+ * ConnectionFactory나 ReactiveTransactionManager를 빈으로 등록하면 JDBC DataSource 자동 구성이 꺼지고
+ * JPA 트랜잭션 매니저와 충돌하므로, 빈으로 노출하지 않고 여기서만 들고 있는다
+ */
+@Slf4j
+@Component
+public class ReactiveDatabase {
+
+    private final ConnectionPool connectionPool;
+    private final DatabaseClient client;
+    private final R2dbcTransactionManager transactionManager;
+
+    public ReactiveDatabase(@Value("${reactive.r2dbc.database:reactive}") String database,
+                            @Value("${reactive.r2dbc.pool-size:20}") int poolSize,
+                            @Value("${reactive.r2dbc.max-acquire-time-ms:30000}") long maxAcquireTimeMs) {
+        H2ConnectionFactory connectionFactory = new H2ConnectionFactory(H2ConnectionConfiguration.builder()
+                .inMemory(database)
+                .property(H2ConnectionOption.DB_CLOSE_DELAY, "-1")
+                .build());
+        this.connectionPool = new ConnectionPool(ConnectionPoolConfiguration.builder(connectionFactory)
+                .initialSize(1)
+                .maxSize(poolSize)
+                //히카리 connectionTimeout처럼 커넥션을 못 얻으면 무한정 기다리지 않고 실패한다
+                .maxAcquireTime(Duration.ofMillis(maxAcquireTimeMs))
+                .build());
+        this.client = DatabaseClient.create(connectionPool);
+        this.transactionManager = new R2dbcTransactionManager(connectionPool);
+    }
+
+    @PostConstruct
+    void createSchema() {
+        client.sql("create table if not exists member (id bigint auto_increment primary key, username varchar(255))")
+                .then()
+                .then(client.sql("create table if not exists log (id bigint auto_increment primary key, message varchar(255))")
+                        .then())
+                .block();
+        log.info("reactive schema 생성 완료");
+    }
+
+    @PreDestroy
+    void close() {
+        connectionPool.dispose();
+    }
+
+    public DatabaseClient client() {
+        return client;
+    }
+
+    public TransactionalOperator transactional(int propagationBehavior) {
+        return TransactionalOperator.create(transactionManager, new DefaultTransactionDefinition(propagationBehavior));
+    }
+
+    public TransactionalOperator transactional() {
+        return transactional(TransactionDefinition.PROPAGATION_REQUIRED);
+    }
+}
@@ -0,0 +1,54 @@
+package hello.springtx.reactive;
+
+import hello.springtx.propagation.Log;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import reactor.core.publisher.Mono;
+
+@Slf4j
+@Repository
+public class ReactiveLogRepository {
+
+    private final ReactiveDatabase db;
+
+    private final TransactionalOperator requiresNew;
+
+    public ReactiveLogRepository(ReactiveDatabase db) {
+        this.db = db;
+        this.requiresNew = db.transactional(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    //LogRepository.save와 같게 REQUIRES_NEW, 바깥 트랜잭션은 보류되고 로그만 따로 커밋/롤백된다
+    public Mono<Log> save(Log logMessage) {
+        return Mono.defer(() -> {
+                    log.info("log 저장");
+                    return db.client().sql("insert into log(message) values(:message)")
+                            .bind("message", logMessage.getMessage())
+                            .filter(statement -> statement.returnGeneratedValues("id"))
+                            .map(row -> row.get("id", Long.class))
+                            .one();
+                })
+                .flatMap(id -> {
+                    logMessage.setId(id);
+                    if (logMessage.getMessage().contains("로그예외")) {
+                        log.info("log 저장시 예외 발생");
+                        return Mono.error(new RuntimeException("예외 발생"));
+                    }
+                    return Mono.just(logMessage);
+                })
+                .as(requiresNew::transactional);
+    }
+
+    public Mono<Log> find(String message) {
+        return db.client().sql("select id, message from log where message = :message")
+                .bind("message", message)
+                .map(row -> {
+                    Log log = new Log(row.get("message", String.class));
+                    log.setId(row.get("id", Long.class));
+                    return log;
+                })
+                .first();
+    }
+}
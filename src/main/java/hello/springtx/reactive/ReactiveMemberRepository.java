@@ -0,0 +1,47 @@
+package hello.springtx.reactive;
+
+import hello.springtx.propagation.Member;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import reactor.core.publisher.Mono;
+
+@Slf4j
+@Repository
+public class ReactiveMemberRepository {
+
+    private final ReactiveDatabase db;
+
+    private final TransactionalOperator transactional;
+
+    public ReactiveMemberRepository(ReactiveDatabase db) {
+        this.db = db;
+        this.transactional = db.transactional();
+    }
+
+    //@Transactional 기본 전파(REQUIRED)와 같게 기존 트랜잭션이 있으면 참여
+    public Mono<Member> save(Member member) {
+        return Mono.defer(() -> {
+                    log.info("member 저장");
+                    return db.client().sql("insert into member(username) values(:username)")
+                            .bind("username", member.getUsername())
+                            .filter(statement -> statement.returnGeneratedValues("id"))
+                            .map(row -> row.get("id", Long.class))
+                            .one();
+                })
+                .doOnNext(member::setId)
+                .thenReturn(member)
+                .as(transactional::transactional);
+    }
+
+    public Mono<Member> find(String username) {
+        return db.client().sql("select id, username from member where username = :username")
+                .bind("username", username)
+                .map(row -> {
+                    Member member = new Member(row.get("username", String.class));
+                    member.setId(row.get("id", Long.class));
+                    return member;
+                })
+                .first();
+    }
+}
@@ -0,0 +1,59 @@
+package hello.springtx.reactive;
+
+import hello.springtx.propagation.Log;
+import hello.springtx.propagation.Member;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import reactor.core.publisher.Mono;
+
+/**
+ * MemberService의 reactive 버전
+ * 트랜잭션은 쓰레드로컬이 아니라 reactor Context로 전파되므로 @Transactional 대신 TransactionalOperator를 쓴다
+ */
+@Slf4j
+@Service
+public class ReactiveMemberService {
+
+    private final ReactiveMemberRepository memberRepository;
+
+    private final ReactiveLogRepository logRepository;
+
+    private final TransactionalOperator transactional;
+
+    public ReactiveMemberService(ReactiveMemberRepository memberRepository, ReactiveLogRepository logRepository,
+                                 ReactiveDatabase db) {
+        this.memberRepository = memberRepository;
+        this.logRepository = logRepository;
+        this.transactional = db.transactional();
+    }
+
+    //로그 저장 실패가 그대로 전파되어 회원 저장도 롤백된다
+    public Mono<Void> joinV1(String username) {
+        return Mono.defer(() -> {
+                    Member member = new Member(username);
+                    Log log1 = new Log(username);
+                    return memberRepository.save(member)
+                            .then(logRepository.save(log1));
+                })
+                .then()
+                .as(transactional::transactional);
+    }
+
+    //로그는 별도 트랜잭션이라 실패해도 예외를 잡으면 회원은 커밋된다
+    public Mono<Void> joinV2(String username) {
+        return Mono.defer(() -> {
+                    Member member = new Member(username);
+                    Log log1 = new Log(username);
+                    return memberRepository.save(member)
+                            .then(logRepository.save(log1)
+                                    .onErrorResume(RuntimeException.class, e -> {
+                                        log.info("log 저장에 실패했습니다. log1Message={}", log1.getMessage());
+                                        log.info("정상 흐름 반환");
+                                        return Mono.empty();
+                                    }));
+                })
+                .then()
+                .as(transactional::transactional);
+    }
+}
@@ -0,0 +1,26 @@
+package hello.springtx.report;
+
+import hello.springtx.propagation.Member;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.Repository;
+import org.springframework.data.repository.query.Param;
+
+import java.util.List;
+
+public interface MemberReportRepository extends Repository<Member, Long> {
+
+    @Query("select min(m.id) as minId, max(m.id) as maxId from Member m")
+    IdRange findIdRange();
+
+    //같은 메시지의 Log가 없는 회원 = 로그 저장이 실패한 회원
+    @Query("select m.id as id, m.username as username from Member m " +
+            "where m.id between :from and :to " +
+            "and not exists (select l.id from Log l where l.message = m.username)")
+    List<MemberSummary> findWithoutLog(@Param("from") long from, @Param("to") long to);
+
+    interface IdRange {
+        Long getMinId();
+
+        Long getMaxId();
+    }
+}
@@ -0,0 +1,11 @@
+package hello.springtx.report;
+
+/**
+ * 회원 id, username만 읽는 인터페이스 프로젝션
+ */
+public interface MemberSummary {
+
+    Long getId();
+
+    String getUsername();
+}
@@ -0,0 +1,34 @@
+package hello.springtx.report;
+
+import hello.springtx.order.PayStatus;
+import lombok.Getter;
+
+/**
+ * 사용자별, 결제 상태별 주문 수 (JPQL 생성자 프로젝션)
+ */
+@Getter
+public class OrderStatusCount {
+
+    private final String userName;
+    private final String payStatus;
+    private final long count;
+
+    public OrderStatusCount(String userName, String payStatus, Long count) {
+        this.userName = userName;
+        this.payStatus = payStatus;
+        this.count = count;
+    }
+
+    //o.payStatus는 PayStatus로 조회된다
+    public OrderStatusCount(String userName, PayStatus payStatus, Long count) {
+        this(userName, payStatus == null ? null : payStatus.getLabel(), count);
+    }
+
+    OrderStatusCount merge(OrderStatusCount other) {
+        return new OrderStatusCount(userName, payStatus, count + other.count);
+    }
+
+    String key() {
+        return userName + "\u0000" + payStatus;
+    }
+}
@@ -0,0 +1,39 @@
+package hello.springtx.report;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.BiFunction;
+
+/**
+ * id 범위를 chunkSize 이하가 될 때까지 반으로 나눠 병렬로 조회하고 결과를 합친다
+ */
+class RangeQueryTask<T> extends RecursiveTask<List<T>> {
+
+    private final long from;
+    private final long to;
+    private final long chunkSize;
+    private final BiFunction<Long, Long, List<T>> query;
+
+    RangeQueryTask(long from, long to, long chunkSize, BiFunction<Long, Long, List<T>> query) {
+        this.from = from;
+        this.to = to;
+        this.chunkSize = chunkSize;
+        this.query = query;
+    }
+
+    @Override
+    protected List<T> compute() {
+        if (to - from < chunkSize) {
+            return query.apply(from, to);
+        }
+
+        long mid = from + (to - from) / 2;
+        RangeQueryTask<T> left = new RangeQueryTask<>(from, mid, chunkSize, query);
+        RangeQueryTask<T> right = new RangeQueryTask<>(mid + 1, to, chunkSize, query);
+        left.fork();
+        List<T> result = new ArrayList<>(right.compute());
+        result.addAll(left.join());
+        return result;
+    }
+}
@@ -0,0 +1,113 @@
+package hello.springtx.report;
+
+import hello.springtx.propagation.LogRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PreDestroy;
+import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.BiFunction;
+import java.util.stream.Collectors;
+
+/**
+ * 읽기 전용 리포트
+ * 엔티티 대신 DTO/인터페이스 프로젝션으로 읽어서 영속성 컨텍스트에 스냅샷이 쌓이지 않고,
+ * readOnly 트랜잭션이라 hibernate flush도 MANUAL로 꺼진다
+ * 큰 id 범위는 나눠서 fork-join 풀에서 병렬로 조회한다(하위 조회마다 자기 쓰레드에서 트랜잭션을 따로 연다)
+ */
+@Slf4j
+@Service
+public class ReportService {
+
+    private final EntityManager em;
+    private final MemberReportRepository memberReportRepository;
+    private final LogRepository logRepository;
+    private final TransactionTemplate readOnly;
+    private final ForkJoinPool pool;
+    private final long chunkSize;
+
+    public ReportService(EntityManager em, MemberReportRepository memberReportRepository, LogRepository logRepository,
+                         PlatformTransactionManager transactionManager,
+                         @Value("${report.parallelism:4}") int parallelism,
+                         @Value("${report.chunk-size:10000}") long chunkSize) {
+        this.em = em;
+        this.memberReportRepository = memberReportRepository;
+        this.logRepository = logRepository;
+        this.readOnly = new TransactionTemplate(transactionManager);
+        this.readOnly.setReadOnly(true);
+        //JDBC 호출로 막히는 작업이라 공용 풀 대신 커넥션 풀 크기에 맞춘 전용 풀을 쓴다
+        this.pool = new ForkJoinPool(parallelism);
+        this.chunkSize = chunkSize;
+    }
+
+    @PreDestroy
+    void close() {
+        pool.shutdown();
+    }
+
+    public List<OrderStatusCount> countOrdersByUserAndStatus() {
+        Object[] range = readOnly.execute(status ->
+                em.createQuery("select min(o.id), max(o.id) from Order o", Object[].class).getSingleResult());
+        if (range == null || range[0] == null) {
+            return List.of();
+        }
+
+        List<OrderStatusCount> partial = parallel((Long) range[0], (Long) range[1], (from, to) ->
+                em.createQuery("select new hello.springtx.report.OrderStatusCount(o.userName, o.payStatus, count(o)) " +
+                                "from Order o where o.id between :from and :to " +
+                                "group by o.userName, o.payStatus", OrderStatusCount.class)
+                        .setParameter("from", from)
+                        .setParameter("to", to)
+                        .getResultList());
+
+        //범위마다 나온 부분 합계를 합친다
+        Map<String, OrderStatusCount> merged = new LinkedHashMap<>();
+        for (OrderStatusCount count : partial) {
+            merged.merge(count.key(), count, OrderStatusCount::merge);
+        }
+        return sorted(merged.values());
+    }
+
+    /**
+     * Log가 남지 않은 회원, 아카이브로 옮겨진 로그는 제외한다
+     */
+    public List<MemberSummary> findMembersWithoutLog() {
+        MemberReportRepository.IdRange range = readOnly.execute(status -> memberReportRepository.findIdRange());
+        if (range == null || range.getMinId() == null) {
+            return List.of();
+        }
+
+        //핫 테이블에 로그가 없는 회원 중 아카이브에 로그가 있는 회원을 한번에 거른다(회원마다 조회하지 않는다)
+        List<MemberSummary> withoutHotLog = parallel(range.getMinId(), range.getMaxId(), memberReportRepository::findWithoutLog);
+        Set<String> archived = logRepository.findArchivedMessages(withoutHotLog.stream()
+                .map(MemberSummary::getUsername)
+                .collect(Collectors.toSet()));
+        return withoutHotLog.stream()
+                .filter(member -> !archived.contains(member.getUsername()))
+                .sorted(Comparator.comparing(MemberSummary::getId))
+                .collect(Collectors.toList());
+    }
+
+    private <T> List<T> parallel(long from, long to, BiFunction<Long, Long, List<T>> query) {
+        return pool.invoke(new RangeQueryTask<>(from, to, chunkSize,
+                (chunkFrom, chunkTo) -> readOnly.execute(status -> query.apply(chunkFrom, chunkTo))));
+    }
+
+    private static List<OrderStatusCount> sorted(Collection<OrderStatusCount> counts) {
+        List<OrderStatusCount> result = new ArrayList<>(counts);
+        result.sort(Comparator.comparing(OrderStatusCount::getUserName, Comparator.nullsFirst(Comparator.naturalOrder()))
+                .thenComparing(OrderStatusCount::getPayStatus, Comparator.nullsFirst(Comparator.naturalOrder())));
+        return result;
+    }
+}
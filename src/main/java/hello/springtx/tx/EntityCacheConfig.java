@@ -0,0 +1,94 @@
+package hello.springtx.tx;
+
+import com.github.benmanes.caffeine.jcache.configuration.CaffeineConfiguration;
+import hello.springtx.order.Order;
+import hello.springtx.propagation.Member;
+import org.hibernate.cache.jcache.ConfigSettings;
+import org.hibernate.cache.spi.RegionFactory;
+import org.hibernate.cfg.AvailableSettings;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.cache.CacheManager;
+import javax.cache.Caching;
+import java.net.URI;
+import java.util.List;
+import java.util.OptionalLong;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * hibernate 2차 캐시, JCache(Caffeine) 로컬 캐시에 엔티티를 담는다
+ * 영역마다 최대 개수(크기 초과 시 eviction)와 TTL(쓰기 후 만료)을 둔다
+ */
+@Configuration(proxyBeanMethods = false)
+public class EntityCacheConfig {
+
+    //엔티티 영역 이름은 엔티티 클래스 이름
+    public static final List<String> ENTITY_REGIONS = List.of(Order.class.getName(), Member.class.getName());
+
+    //@QueryHint(org.hibernate.cacheable) 쿼리 결과 영역
+    public static final String QUERY_RESULTS_REGION = RegionFactory.DEFAULT_QUERY_RESULTS_REGION_UNQUALIFIED_NAME;
+
+    //테이블별 마지막 변경 시각, 쿼리 결과가 오래됐는지 판단하므로 만료나 크기 eviction으로 빠지면 안 된다
+    //항목 수가 테이블 수만큼이라 크기 제한 없이 둔다
+    public static final String UPDATE_TIMESTAMPS_REGION = RegionFactory.DEFAULT_UPDATE_TIMESTAMPS_REGION_UNQUALIFIED_NAME;
+
+    //컨텍스트마다 캐시 매니저를 따로 둔다(같은 URI면 프로바이더가 같은 매니저를 돌려준다)
+    @Bean(destroyMethod = "close")
+    @ConditionalOnProperty(name = "jpa.second-level-cache.enabled", havingValue = "true", matchIfMissing = true)
+    public CacheManager entityCacheManager(@Value("${jpa.second-level-cache.max-entries:10000}") long maxEntries,
+                                           @Value("${jpa.second-level-cache.ttl-ms:300000}") long ttlMs) {
+        CacheManager cacheManager = Caching.getCachingProvider(
+                        "com.github.benmanes.caffeine.jcache.spi.CaffeineCachingProvider")
+                .getCacheManager(URI.create("springtx-entity-cache-" + UUID.randomUUID()), getClass().getClassLoader());
+        ENTITY_REGIONS.forEach(region -> cacheManager.createCache(region, regionConfiguration(maxEntries, ttlMs)));
+        cacheManager.createCache(QUERY_RESULTS_REGION, regionConfiguration(maxEntries, ttlMs));
+        cacheManager.createCache(UPDATE_TIMESTAMPS_REGION, regionConfiguration(0, 0));
+        return cacheManager;
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "jpa.second-level-cache.enabled", havingValue = "true", matchIfMissing = true)
+    public HibernatePropertiesCustomizer entityCacheCustomizer(CacheManager entityCacheManager) {
+        return properties -> {
+            properties.put(AvailableSettings.USE_SECOND_LEVEL_CACHE, true);
+            properties.put(AvailableSettings.USE_QUERY_CACHE, true);
+            properties.put(AvailableSettings.CACHE_REGION_FACTORY, "jcache");
+            properties.put(ConfigSettings.CACHE_MANAGER, entityCacheManager);
+            //미리 만들지 않은 영역은 크기 제한 없이 만들어지므로 경고를 남긴다
+            properties.put(ConfigSettings.MISSING_CACHE_STRATEGY, "create-warn");
+        };
+    }
+
+    //끌 때는 명시해야 한다, 설정이 없으면 hibernate가 클래스패스의 JCache를 찾아 제한 없는 캐시로 켠다
+    @Bean
+    @ConditionalOnProperty(name = "jpa.second-level-cache.enabled", havingValue = "false")
+    public HibernatePropertiesCustomizer entityCacheDisabledCustomizer() {
+        return properties -> {
+            properties.put(AvailableSettings.USE_SECOND_LEVEL_CACHE, false);
+            properties.put(AvailableSettings.USE_QUERY_CACHE, false);
+        };
+    }
+
+    //maxEntries가 0이면 크기 제한 없음, ttlMs가 0이면 만료 없음
+    private static CaffeineConfiguration<Object, Object> regionConfiguration(long maxEntries, long ttlMs) {
+        CaffeineConfiguration<Object, Object> configuration = new CaffeineConfiguration<>();
+        if (maxEntries > 0) {
+            configuration.setMaximumSize(OptionalLong.of(maxEntries));
+        }
+        if (ttlMs > 0) {
+            configuration.setExpireAfterWrite(OptionalLong.of(TimeUnit.MILLISECONDS.toNanos(ttlMs)));
+        }
+        //JCache 기본값은 store-by-value(읽고 쓸 때마다 직렬화 복사), hibernate가 분해한 상태를 넣으므로 참조로 충분하다
+        configuration.setStoreByValue(false);
+        //eviction 통계를 호출 스레드에서 바로 반영
+        configuration.setExecutorFactory(() -> Runnable::run);
+        //javax.cache:type=CacheStatistics MBean, eviction 수를 여기서 읽는다
+        configuration.setStatisticsEnabled(true);
+        return configuration;
+    }
+}
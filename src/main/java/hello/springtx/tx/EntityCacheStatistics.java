@@ -0,0 +1,96 @@
+package hello.springtx.tx;
+
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.hibernate.stat.Statistics;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import javax.cache.CacheManager;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.persistence.EntityManagerFactory;
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 2차 캐시 영역별 적중/미스/저장(hibernate 통계)과 eviction(JCache 통계) 조회
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "jpa.second-level-cache.enabled", havingValue = "true", matchIfMissing = true)
+public class EntityCacheStatistics {
+
+    private final EntityManagerFactory emf;
+
+    private final CacheManager entityCacheManager;
+
+    private final MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+
+    private volatile Statistics statistics;
+
+    public EntityCacheStatistics(EntityManagerFactory emf, CacheManager entityCacheManager) {
+        this.emf = emf;
+        this.entityCacheManager = entityCacheManager;
+    }
+
+    private Statistics statistics() {
+        Statistics result = statistics;
+        if (result == null) {
+            result = emf.unwrap(SessionFactory.class).getStatistics();
+            statistics = result;
+        }
+        return result;
+    }
+
+    public long getHitCount(String region) {
+        return regionStatistics(region).getHitCount();
+    }
+
+    public long getMissCount(String region) {
+        return regionStatistics(region).getMissCount();
+    }
+
+    public long getPutCount(String region) {
+        return regionStatistics(region).getPutCount();
+    }
+
+    public double getHitRatio(String region) {
+        long hit = getHitCount(region);
+        long miss = getMissCount(region);
+        return hit + miss == 0 ? 0 : (double) hit / (hit + miss);
+    }
+
+    //크기 초과로 밀려난 항목 수(만료는 포함하지 않는다)
+    public long getEvictionCount(String region) {
+        try {
+            ObjectName name = new ObjectName("javax.cache:type=CacheStatistics,CacheManager="
+                    + entityCacheManager.getURI() + ",Cache=" + region);
+            return (Long) mBeanServer.getAttribute(name, "CacheEvictions");
+        } catch (JMException e) {
+            throw new IllegalStateException("캐시 통계 조회 실패 region=" + region, e);
+        }
+    }
+
+    private CacheRegionStatistics regionStatistics(String region) {
+        return statistics().getDomainDataRegionStatistics(region);
+    }
+
+    /**
+     * 영역별 hit/miss/put/eviction
+     */
+    public Map<String, String> getRegionStatistics() {
+        Map<String, String> result = new LinkedHashMap<>();
+        EntityCacheConfig.ENTITY_REGIONS.forEach(region -> result.put(region,
+                String.format("hit=%d miss=%d put=%d eviction=%d hitRatio=%.3f", getHitCount(region),
+                        getMissCount(region), getPutCount(region), getEvictionCount(region), getHitRatio(region))));
+        return result;
+    }
+
+    public void log() {
+        getRegionStatistics().forEach((region, stats) -> log.info("second-level cache region={} {}", region, stats));
+    }
+}
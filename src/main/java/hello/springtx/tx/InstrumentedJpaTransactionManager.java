@@ -0,0 +1,273 @@
+package hello.springtx.tx;
+
+import hello.springtx.tx.TransactionEvents.BeginEvent;
+import hello.springtx.tx.TransactionEvents.CommitEvent;
+import hello.springtx.tx.TransactionEvents.ParticipateEvent;
+import hello.springtx.tx.TransactionEvents.ResumeEvent;
+import hello.springtx.tx.TransactionEvents.RollbackEvent;
+import hello.springtx.tx.TransactionEvents.RollbackOnlyEvent;
+import hello.springtx.tx.TransactionEvents.SuspendEvent;
+import hello.springtx.tx.TransactionEvents.TransactionEvent;
+import org.springframework.orm.jpa.JpaTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionTimedOutException;
+import org.springframework.transaction.support.DefaultTransactionStatus;
+import org.springframework.transaction.support.DelegatingTransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.persistence.EntityManagerFactory;
+import java.util.function.LongSupplier;
+
+/**
+ * 트랜잭션 생명주기마다 JFR 이벤트를 남기는 JpaTransactionManager
+ * AbstractPlatformTransactionManager의 getTransaction/commit/rollback은 final이라 doXxx 훅과
+ * newTransactionStatus에서 이벤트를 만든다
+ */
+public class InstrumentedJpaTransactionManager extends JpaTransactionManager {
+
+    private RollbackOnlyGuard rollbackOnlyGuard;
+
+    private long defaultDeadlineMillis;
+
+    private LongSupplier clock = System::nanoTime;
+
+    public InstrumentedJpaTransactionManager(EntityManagerFactory emf) {
+        super(emf);
+    }
+
+    public void setRollbackOnlyGuard(RollbackOnlyGuard rollbackOnlyGuard) {
+        this.rollbackOnlyGuard = rollbackOnlyGuard;
+    }
+
+    /**
+     * timeout이 없는 가장 바깥 트랜잭션에 줄 기본 데드라인, 0이면 데드라인 없음
+     */
+    public void setDefaultDeadlineMillis(long defaultDeadlineMillis) {
+        this.defaultDeadlineMillis = defaultDeadlineMillis;
+    }
+
+    //테스트에서 데드라인 시간을 직접 움직인다
+    void setClock(LongSupplier clock) {
+        this.clock = clock;
+    }
+
+    //새 트랜잭션이면 doBegin 전에, 참여면 기존 트랜잭션을 찾은 직후에 호출된다
+    @Override
+    protected DefaultTransactionStatus newTransactionStatus(TransactionDefinition definition, Object transaction,
+                                                            boolean newTransaction, boolean newSynchronization,
+                                                            boolean debug, Object suspendedResources) {
+        if (rollbackOnlyGuard != null && transaction != null && !newTransaction) {
+            rollbackOnlyGuard.checkParticipation(definition, transaction);
+        }
+
+        boolean actualNewSynchronization = newSynchronization &&
+                !TransactionSynchronizationManager.isSynchronizationActive();
+        InstrumentedTransactionStatus status = new InstrumentedTransactionStatus(definition, transaction,
+                newTransaction, actualNewSynchronization, debug, suspendedResources);
+
+        if (transaction != null && !newTransaction && TransactionEvents.PARTICIPATE.isEnabled()) {
+            ParticipateEvent event = new ParticipateEvent();
+            event.set(definition);
+            event.commit();
+        }
+        return status;
+    }
+
+    @Override
+    protected void doBegin(Object transaction, TransactionDefinition definition) {
+        TransactionDefinition definitionToUse = applyDeadline(transaction, definition);
+        BeginEvent event = TransactionEvents.BEGIN.isEnabled() ? new BeginEvent() : null;
+        if (event != null) {
+            event.begin();
+        }
+        try {
+            super.doBegin(transaction, definitionToUse);
+        } catch (RuntimeException | Error e) {
+            TransactionDeadline.clear(transaction);
+            throw e;
+        }
+        if (event != null && event.shouldCommit()) {
+            event.set(definitionToUse);
+            event.commit();
+        }
+    }
+
+    @Override
+    protected void doCleanupAfterCompletion(Object transaction) {
+        super.doCleanupAfterCompletion(transaction);
+        TransactionDeadline.clear(transaction);
+    }
+
+    /**
+     * 가장 바깥 트랜잭션이면 데드라인을 정하고, 보류된 바깥 트랜잭션이 있으면(REQUIRES_NEW) 남은 시간을 timeout으로 준다
+     * TransactionDeadline.withoutDefault 안에서 시작한 백그라운드 트랜잭션은 기본 데드라인을 받지 않는다
+     * timeout은 hibernate가 JDBC query timeout으로 걸어서 느린 SQL은 남은 시간이 지나면 취소된다
+     */
+    private TransactionDefinition applyDeadline(Object transaction, TransactionDefinition definition) {
+        TransactionDeadline deadline = TransactionDeadline.current();
+        if (deadline == null) {
+            long timeoutMillis = definition.getTimeout() != TransactionDefinition.TIMEOUT_DEFAULT
+                    ? definition.getTimeout() * 1000L
+                    : TransactionDeadline.isExempt() ? 0 : defaultDeadlineMillis;
+            if (timeoutMillis <= 0) {
+                return definition;
+            }
+            TransactionDeadline.start(transaction, timeoutMillis, clock);
+            return withTimeout(definition, TransactionDeadline.toSeconds(timeoutMillis));
+        }
+
+        long remaining = deadline.remainingMillis();
+        if (remaining <= 0) {
+            throw new TransactionTimedOutException("트랜잭션 데드라인이 지났습니다. name=" + definition.getName());
+        }
+        int timeout = TransactionDeadline.toSeconds(remaining);
+        if (definition.getTimeout() != TransactionDefinition.TIMEOUT_DEFAULT) {
+            timeout = Math.min(timeout, definition.getTimeout());
+        }
+        return withTimeout(definition, timeout);
+    }
+
+    private static TransactionDefinition withTimeout(TransactionDefinition definition, int timeout) {
+        return new DelegatingTransactionDefinition(definition) {
+            @Override
+            public int getTimeout() {
+                return timeout;
+            }
+        };
+    }
+
+    @Override
+    protected Object doSuspend(Object transaction) {
+        SuspendEvent event = null;
+        if (TransactionEvents.SUSPEND.isEnabled()) {
+            event = new SuspendEvent();
+            event.name = TransactionSynchronizationManager.getCurrentTransactionName();
+            event.readOnly = TransactionSynchronizationManager.isCurrentTransactionReadOnly();
+            event.begin();
+        }
+        return new SuspendedResources(super.doSuspend(transaction), event);
+    }
+
+    @Override
+    protected void doResume(Object transaction, Object suspendedResources) {
+        SuspendedResources suspended = (SuspendedResources) suspendedResources;
+        ResumeEvent event = TransactionEvents.RESUME.isEnabled() ? new ResumeEvent() : null;
+        if (event != null) {
+            event.begin();
+        }
+        super.doResume(transaction, suspended.resources);
+
+        //보류할 때 녹화중이 아니었으면 보류 이벤트가 없다
+        SuspendEvent suspendEvent = suspended.event;
+        if (suspendEvent == null) {
+            return;
+        }
+        suspendEvent.end();
+        if (suspendEvent.shouldCommit()) {
+            suspendEvent.commit();
+        }
+        if (event != null && event.shouldCommit()) {
+            event.name = suspendEvent.name;
+            event.readOnly = suspendEvent.readOnly;
+            event.commit();
+        }
+    }
+
+    @Override
+    protected void doCommit(DefaultTransactionStatus status) {
+        CommitEvent event = TransactionEvents.COMMIT.isEnabled() ? new CommitEvent() : null;
+        if (event != null) {
+            event.begin();
+        }
+        super.doCommit(status);
+        InstrumentedTransactionStatus instrumented = (InstrumentedTransactionStatus) status;
+        if (event != null && event.shouldCommit()) {
+            event.set(instrumented.definition);
+            event.commit();
+        }
+        instrumented.complete("COMMIT");
+    }
+
+    @Override
+    protected void doRollback(DefaultTransactionStatus status) {
+        RollbackEvent event = TransactionEvents.ROLLBACK.isEnabled() ? new RollbackEvent() : null;
+        if (event != null) {
+            event.begin();
+        }
+        super.doRollback(status);
+        InstrumentedTransactionStatus instrumented = (InstrumentedTransactionStatus) status;
+        if (event != null && event.shouldCommit()) {
+            event.set(instrumented.definition);
+            event.commit();
+        }
+        instrumented.complete("ROLLBACK");
+    }
+
+    //참여 트랜잭션이 롤백되면 물리 트랜잭션에 rollback-only 마킹
+    @Override
+    protected void doSetRollbackOnly(DefaultTransactionStatus status) {
+        super.doSetRollbackOnly(status);
+        if (TransactionEvents.ROLLBACK_ONLY.isEnabled()) {
+            RollbackOnlyEvent event = new RollbackOnlyEvent();
+            event.set(((InstrumentedTransactionStatus) status).definition);
+            event.global = true;
+            event.commit();
+        }
+    }
+
+    private static class SuspendedResources {
+        private final Object resources;
+        private final SuspendEvent event;
+
+        SuspendedResources(Object resources, SuspendEvent event) {
+            this.resources = resources;
+            this.event = event;
+        }
+    }
+
+    static class InstrumentedTransactionStatus extends DefaultTransactionStatus {
+
+        private final TransactionDefinition definition;
+
+        private final TransactionEvent event;
+
+        InstrumentedTransactionStatus(TransactionDefinition definition, Object transaction, boolean newTransaction,
+                                      boolean newSynchronization, boolean debug, Object suspendedResources) {
+            super(transaction, newTransaction, newSynchronization, definition.isReadOnly(), debug, suspendedResources);
+            this.definition = definition;
+            //참여 트랜잭션 status는 complete 되지 않으므로 물리 트랜잭션을 새로 시작할 때만 만든다
+            this.event = newTransaction && TransactionEvents.TRANSACTION.isEnabled() ? new TransactionEvent() : null;
+            if (this.event != null) {
+                this.event.begin();
+            }
+        }
+
+        TransactionDefinition getDefinition() {
+            return definition;
+        }
+
+        //TransactionStatus.setRollbackOnly() 직접 호출, 지역 rollback-only 마킹
+        @Override
+        public void setRollbackOnly() {
+            super.setRollbackOnly();
+            if (TransactionEvents.ROLLBACK_ONLY.isEnabled()) {
+                RollbackOnlyEvent rollbackOnly = new RollbackOnlyEvent();
+                rollbackOnly.set(definition);
+                rollbackOnly.global = false;
+                rollbackOnly.commit();
+            }
+        }
+
+        void complete(String outcome) {
+            if (event == null) {
+                return;
+            }
+            event.end();
+            if (event.shouldCommit()) {
+                event.set(definition);
+                event.outcome = outcome;
+                event.commit();
+            }
+        }
+    }
+}
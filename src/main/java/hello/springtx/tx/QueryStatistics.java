@@ -0,0 +1,76 @@
+package hello.springtx.tx;
+
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.springframework.stereotype.Component;
+
+import javax.persistence.EntityManagerFactory;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * hibernate 통계 조회, hibernate.generate_statistics=true 일 때만 값이 쌓인다
+ */
+@Slf4j
+@Component
+public class QueryStatistics {
+
+    private final EntityManagerFactory emf;
+
+    private volatile Statistics statistics;
+
+    //fast-start 프로필에서는 EntityManagerFactory가 백그라운드로 만들어지므로 처음 쓸 때 가져온다
+    public QueryStatistics(EntityManagerFactory emf) {
+        this.emf = emf;
+    }
+
+    private Statistics statistics() {
+        Statistics result = statistics;
+        if (result == null) {
+            result = emf.unwrap(SessionFactory.class).getStatistics();
+            statistics = result;
+        }
+        return result;
+    }
+
+    public boolean isEnabled() {
+        return statistics().isStatisticsEnabled();
+    }
+
+    //JPQL -> SQL 변환 계획 캐시 적중률
+    public double getPlanCacheHitRatio() {
+        long hit = statistics().getQueryPlanCacheHitCount();
+        long miss = statistics().getQueryPlanCacheMissCount();
+        return hit + miss == 0 ? 0 : (double) hit / (hit + miss);
+    }
+
+    public long getPrepareStatementCount() {
+        return statistics().getPrepareStatementCount();
+    }
+
+    /**
+     * 쿼리별 실행 횟수, 평균/최대 실행 시간(ms)
+     */
+    public Map<String, String> getQueryExecutionTimes() {
+        Map<String, String> result = new LinkedHashMap<>();
+        Arrays.stream(statistics().getQueries()).sorted().forEach(query -> {
+            org.hibernate.stat.QueryStatistics stats = statistics().getQueryStatistics(query);
+            result.put(query, String.format("count=%d avg=%dms max=%dms",
+                    stats.getExecutionCount(), stats.getExecutionAvgTime(), stats.getExecutionMaxTime()));
+        });
+        return result;
+    }
+
+    public void log() {
+        log.info("query plan cache hitRatio={} hit={} miss={} prepareStatement={}",
+                String.format("%.3f", getPlanCacheHitRatio()), statistics().getQueryPlanCacheHitCount(),
+                statistics().getQueryPlanCacheMissCount(), getPrepareStatementCount());
+        getQueryExecutionTimes().forEach((query, times) -> log.info("query={} {}", query, times));
+    }
+
+    public void clear() {
+        statistics().clear();
+    }
+}
@@ -0,0 +1,58 @@
+package hello.springtx.tx;
+
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.ResourceHolderSupport;
+import org.springframework.transaction.support.SmartTransactionObject;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 물리 트랜잭션이 이미 rollback-only로 마킹되었으면 이후 참여 트랜잭션과 SQL을 바로 거절한다
+ * 어차피 커밋 시점에 UnexpectedRollbackException으로 끝날 작업이라 DB 작업과 커넥션 점유를 줄이는 용도
+ * tx.rollback-only.fail-fast=true 일 때만 등록된다
+ */
+@Slf4j
+public class RollbackOnlyGuard implements StatementInspector {
+
+    private final LongAdder rejectedParticipations = new LongAdder();
+    private final LongAdder rejectedStatements = new LongAdder();
+
+    //InstrumentedJpaTransactionManager가 기존 트랜잭션에 참여하기 직전에 호출
+    void checkParticipation(TransactionDefinition definition, Object transaction) {
+        if (transaction instanceof SmartTransactionObject && ((SmartTransactionObject) transaction).isRollbackOnly()) {
+            rejectedParticipations.increment();
+            log.debug("rollback-only 트랜잭션 참여 거절 name={}", definition.getName());
+            throw new RollbackOnlyTransactionException(
+                    "rollback-only로 마킹된 트랜잭션에 참여할 수 없습니다. name=" + definition.getName());
+        }
+    }
+
+    //hibernate가 SQL을 준비할 때마다 호출
+    @Override
+    public String inspect(String sql) {
+        if (TransactionSynchronizationManager.isActualTransactionActive() && isRollbackOnly()) {
+            rejectedStatements.increment();
+            log.debug("rollback-only 트랜잭션 SQL 거절 sql={}", sql);
+            throw new RollbackOnlyTransactionException("rollback-only로 마킹된 트랜잭션에서 SQL을 실행할 수 없습니다");
+        }
+        return sql;
+    }
+
+    public long getRejectedParticipations() {
+        return rejectedParticipations.sum();
+    }
+
+    public long getRejectedStatements() {
+        return rejectedStatements.sum();
+    }
+
+    //JpaTransactionObject.setRollbackOnly()는 EntityManagerHolder/ConnectionHolder에 마킹한다
+    private static boolean isRollbackOnly() {
+        return TransactionSynchronizationManager.getResourceMap().values().stream()
+                .anyMatch(holder -> holder instanceof ResourceHolderSupport
+                        && ((ResourceHolderSupport) holder).isRollbackOnly());
+    }
+}
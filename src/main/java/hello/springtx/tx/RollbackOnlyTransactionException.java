@@ -0,0 +1,13 @@
+package hello.springtx.tx;
+
+import org.springframework.transaction.UnexpectedRollbackException;
+
+/**
+ * 커밋까지 가지 않고 rollback-only 트랜잭션을 미리 끊을 때 던진다
+ * 호출하는 쪽에서는 커밋 시점의 UnexpectedRollbackException과 같게 다루면 된다
+ */
+public class RollbackOnlyTransactionException extends UnexpectedRollbackException {
+    public RollbackOnlyTransactionException(String msg) {
+        super(msg);
+    }
+}
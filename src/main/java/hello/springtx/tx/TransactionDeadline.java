@@ -0,0 +1,93 @@
+package hello.springtx.tx;
+
+import org.springframework.transaction.TransactionDefinition;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * 가장 바깥 물리 트랜잭션이 시작될 때 정해지는 쓰레드별 데드라인
+ * 안쪽 REQUIRES_NEW 트랜잭션과 샤드 트랜잭션은 남은 시간만큼만 timeout을 받는다
+ * 배치/아카이브 같은 백그라운드 작업은 withoutDefault로 감싸서 기본 데드라인(tx.deadline.default-ms)을 받지 않는다
+ */
+public final class TransactionDeadline {
+
+    private static final ThreadLocal<TransactionDeadline> current = new ThreadLocal<>();
+
+    private static final ThreadLocal<Boolean> exempt = new ThreadLocal<>();
+
+    private final Object owner;
+    private final LongSupplier clock;
+    private final long deadlineNanos;
+
+    private TransactionDeadline(Object owner, LongSupplier clock, long deadlineNanos) {
+        this.owner = owner;
+        this.clock = clock;
+        this.deadlineNanos = deadlineNanos;
+    }
+
+    /**
+     * work 안에서 시작하는 트랜잭션에는 기본 데드라인을 주지 않는다, timeout을 직접 지정한 트랜잭션은 그대로 적용된다
+     */
+    public static <T> T withoutDefault(Supplier<T> work) {
+        Boolean previous = exempt.get();
+        exempt.set(Boolean.TRUE);
+        try {
+            return work.get();
+        } finally {
+            if (previous == null) {
+                exempt.remove();
+            } else {
+                exempt.set(previous);
+            }
+        }
+    }
+
+    public static void withoutDefault(Runnable work) {
+        withoutDefault(() -> {
+            work.run();
+            return null;
+        });
+    }
+
+    static boolean isExempt() {
+        return exempt.get() != null;
+    }
+
+    static TransactionDeadline current() {
+        return current.get();
+    }
+
+    //owner는 데드라인을 만든 트랜잭션 객체, 그 트랜잭션이 끝날 때만 지운다
+    static void start(Object owner, long timeoutMillis, LongSupplier clock) {
+        current.set(new TransactionDeadline(owner, clock,
+                clock.getAsLong() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis)));
+    }
+
+    static void clear(Object owner) {
+        TransactionDeadline deadline = current.get();
+        if (deadline != null && deadline.owner == owner) {
+            current.remove();
+        }
+    }
+
+    long remainingMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(deadlineNanos - clock.getAsLong());
+    }
+
+    /**
+     * 현재 쓰레드의 남은 시간(초, 올림), 데드라인이 없으면 TIMEOUT_DEFAULT
+     */
+    public static int remainingSeconds() {
+        TransactionDeadline deadline = current.get();
+        if (deadline == null) {
+            return TransactionDefinition.TIMEOUT_DEFAULT;
+        }
+        return toSeconds(deadline.remainingMillis());
+    }
+
+    static int toSeconds(long millis) {
+        return (int) Math.max(0, (millis + 999) / 1000);
+    }
+}
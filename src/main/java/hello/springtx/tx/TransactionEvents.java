@@ -0,0 +1,111 @@
+package hello.springtx.tx;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Propagation;
+
+/**
+ * 트랜잭션 생명주기 JFR 이벤트
+ * 트랜잭션마다 이벤트 객체를 만들지 않도록 EventType을 한번만 얻어두고 isEnabled()일 때만 이벤트를 만든다
+ * 녹화가 꺼져 있으면 트랜잭션 경로에서는 volatile 읽기 한번만 한다
+ */
+public final class TransactionEvents {
+
+    static final EventType TRANSACTION = EventType.getEventType(TransactionEvent.class);
+    static final EventType BEGIN = EventType.getEventType(BeginEvent.class);
+    static final EventType PARTICIPATE = EventType.getEventType(ParticipateEvent.class);
+    static final EventType SUSPEND = EventType.getEventType(SuspendEvent.class);
+    static final EventType RESUME = EventType.getEventType(ResumeEvent.class);
+    static final EventType COMMIT = EventType.getEventType(CommitEvent.class);
+    static final EventType ROLLBACK = EventType.getEventType(RollbackEvent.class);
+    static final EventType ROLLBACK_ONLY = EventType.getEventType(RollbackOnlyEvent.class);
+
+    private TransactionEvents() {
+    }
+
+    @Category({"Spring", "Transaction"})
+    @StackTrace(false)
+    abstract static class TransactionLifecycleEvent extends Event {
+
+        @Label("Name")
+        @Description("트랜잭션 이름, @Transactional이면 클래스.메서드")
+        String name;
+
+        @Label("Propagation")
+        String propagation;
+
+        @Label("Read Only")
+        boolean readOnly;
+
+        void set(TransactionDefinition definition) {
+            name = definition.getName();
+            propagation = propagation(definition.getPropagationBehavior());
+            readOnly = definition.isReadOnly();
+        }
+    }
+
+    @Name("hello.springtx.Transaction")
+    @Label("Transaction")
+    @Description("물리 트랜잭션 시작부터 커밋/롤백까지")
+    public static class TransactionEvent extends TransactionLifecycleEvent {
+        @Label("Outcome")
+        String outcome;
+    }
+
+    @Name("hello.springtx.TransactionBegin")
+    @Label("Transaction Begin")
+    @Description("새 물리 트랜잭션 시작(커넥션 획득 포함)")
+    public static class BeginEvent extends TransactionLifecycleEvent {
+    }
+
+    @Name("hello.springtx.TransactionParticipate")
+    @Label("Transaction Participate")
+    @Description("기존 트랜잭션에 참여")
+    public static class ParticipateEvent extends TransactionLifecycleEvent {
+    }
+
+    @Name("hello.springtx.TransactionSuspend")
+    @Label("Transaction Suspend")
+    @Description("REQUIRES_NEW 등으로 보류된 시점부터 재개될 때까지")
+    public static class SuspendEvent extends TransactionLifecycleEvent {
+    }
+
+    @Name("hello.springtx.TransactionResume")
+    @Label("Transaction Resume")
+    public static class ResumeEvent extends TransactionLifecycleEvent {
+    }
+
+    @Name("hello.springtx.TransactionCommit")
+    @Label("Transaction Commit")
+    public static class CommitEvent extends TransactionLifecycleEvent {
+    }
+
+    @Name("hello.springtx.TransactionRollback")
+    @Label("Transaction Rollback")
+    public static class RollbackEvent extends TransactionLifecycleEvent {
+    }
+
+    @Name("hello.springtx.TransactionRollbackOnly")
+    @Label("Transaction Rollback Only")
+    @Description("롤백 전용 마킹, global이면 참여 트랜잭션 실패로 물리 트랜잭션 전체에 마킹")
+    @StackTrace(true)
+    public static class RollbackOnlyEvent extends TransactionLifecycleEvent {
+        @Label("Global")
+        boolean global;
+    }
+
+    static String propagation(int behavior) {
+        for (Propagation propagation : Propagation.values()) {
+            if (propagation.value() == behavior) {
+                return propagation.name();
+            }
+        }
+        return String.valueOf(behavior);
+    }
+}
@@ -0,0 +1,50 @@
+package hello.springtx.tx;
+
+import org.hibernate.cfg.AvailableSettings;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.AutoConfiguration;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernateJpaAutoConfiguration;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.boot.autoconfigure.transaction.TransactionManagerCustomizers;
+import org.springframework.context.annotation.Bean;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionManager;
+
+import javax.persistence.EntityManagerFactory;
+
+/**
+ * 스프링 부트 기본 JpaTransactionManager 대신 InstrumentedJpaTransactionManager를 등록한다
+ * 자동 구성이라 테스트 등에서 transactionManager 빈을 직접 등록하면 그쪽이 우선한다
+ */
+@AutoConfiguration(before = HibernateJpaAutoConfiguration.class)
+public class TxAutoConfiguration {
+
+    @Bean
+    @ConditionalOnMissingBean(TransactionManager.class)
+    public PlatformTransactionManager transactionManager(EntityManagerFactory entityManagerFactory,
+                                                         ObjectProvider<TransactionManagerCustomizers> customizers,
+                                                         ObjectProvider<RollbackOnlyGuard> rollbackOnlyGuard,
+                                                         @Value("${tx.deadline.default-ms:0}") long defaultDeadlineMs) {
+        InstrumentedJpaTransactionManager transactionManager = new InstrumentedJpaTransactionManager(entityManagerFactory);
+        rollbackOnlyGuard.ifAvailable(transactionManager::setRollbackOnlyGuard);
+        transactionManager.setDefaultDeadlineMillis(defaultDeadlineMs);
+        customizers.ifAvailable(c -> c.customize(transactionManager));
+        return transactionManager;
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "tx.rollback-only.fail-fast", havingValue = "true")
+    public RollbackOnlyGuard rollbackOnlyGuard() {
+        return new RollbackOnlyGuard();
+    }
+
+    //참여 트랜잭션뿐 아니라 SQL 실행도 막도록 hibernate StatementInspector로 등록
+    @Bean
+    @ConditionalOnProperty(name = "tx.rollback-only.fail-fast", havingValue = "true")
+    public HibernatePropertiesCustomizer rollbackOnlyStatementInspector(RollbackOnlyGuard rollbackOnlyGuard) {
+        return properties -> properties.put(AvailableSettings.STATEMENT_INSPECTOR, rollbackOnlyGuard);
+    }
+}
@@ -0,0 +1,43 @@
+package hello.springtx;
+
+import hello.springtx.propagation.LogRepository;
+import hello.springtx.propagation.MemberRepository;
+import hello.springtx.propagation.MemberService;
+import hello.springtx.tx.QueryStatistics;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * fast-start 프로필, 백그라운드 EntityManagerFactory + deferred 리포지토리여도 트랜잭션 동작은 같아야 한다
+ */
+@SpringBootTest(properties = "spring.datasource.url=jdbc:h2:mem:${random.uuid}")
+@ActiveProfiles("fast-start")
+class FastStartProfileTest {
+
+    @Autowired
+    MemberService memberService;
+
+    @Autowired
+    MemberRepository memberRepository;
+
+    @Autowired
+    LogRepository logRepository;
+
+    @Autowired
+    QueryStatistics queryStatistics;
+
+    @Test
+    void firstTransaction() {
+        String username = "fastStart_firstTransaction";
+
+        memberService.joinV2(username);
+
+        assertThat(memberRepository.find(username)).isPresent();
+        assertThat(logRepository.find(username)).isPresent();
+        assertThat(queryStatistics.isEnabled()).isTrue();
+    }
+}
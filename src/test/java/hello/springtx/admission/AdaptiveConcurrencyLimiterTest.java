@@ -0,0 +1,97 @@
+package hello.springtx.admission;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+class AdaptiveConcurrencyLimiterTest {
+
+    static final String FAST = "fast";
+    static final String SLOW = "slow";
+
+    PoolWaitTracker poolWaitTracker = new PoolWaitTracker();
+
+    AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(4, 1, 10, 0.5, 2.0, 5, poolWaitTracker);
+
+    @Test
+    void reject() {
+        for (int i = 0; i < 4; i++) {
+            Assertions.assertThat(limiter.tryAcquire()).isTrue();
+        }
+
+        //limit을 넘으면 기다리지 않고 바로 거절
+        Assertions.assertThat(limiter.tryAcquire()).isFalse();
+        Assertions.assertThat(limiter.getRejected()).isEqualTo(1);
+    }
+
+    @Test
+    void increase() {
+        //limit 절반 이상 사용중에 응답시간이 정상이면 1씩 증가
+        for (int i = 0; i < 4; i++) {
+            limiter.tryAcquire();
+        }
+        limiter.release(FAST, ms(10), false);
+
+        Assertions.assertThat(limiter.getLimit()).isEqualTo(5);
+    }
+
+    @Test
+    void decreaseOnLatency() {
+        limiter.tryAcquire();
+        limiter.release(FAST, ms(10), false);
+
+        //한번 튄 응답시간으로는 줄이지 않는다
+        limiter.tryAcquire();
+        limiter.release(FAST, ms(30), false);
+        Assertions.assertThat(limiter.getLimit()).isEqualTo(4);
+
+        //평균 응답시간이 최소 응답시간(10ms)의 2배를 넘으면 절반으로
+        for (int i = 0; i < 3; i++) {
+            limiter.tryAcquire();
+            limiter.release(FAST, ms(30), false);
+        }
+        Assertions.assertThat(limiter.getLimit()).isLessThan(4);
+    }
+
+    @Test
+    void rttPerMethod() {
+        limiter.tryAcquire();
+        limiter.release(FAST, ms(10), false);
+
+        //느린 메서드는 자기 최소 응답시간과 비교한다
+        for (int i = 0; i < 10; i++) {
+            limiter.tryAcquire();
+            limiter.release(SLOW, ms(100), false);
+        }
+
+        Assertions.assertThat(limiter.getLimit()).isEqualTo(4);
+    }
+
+    @Test
+    void decreaseOnPoolWait() {
+        poolWaitTracker.recordAcquire(ms(100));
+
+        limiter.tryAcquire();
+        limiter.release(FAST, ms(10), false);
+
+        Assertions.assertThat(limiter.getLimit()).isEqualTo(2);
+    }
+
+    @Test
+    void decreaseOnDrop() {
+        limiter.tryAcquire();
+        limiter.release(FAST, ms(10), true);
+        limiter.tryAcquire();
+        limiter.release(FAST, ms(10), true);
+        limiter.tryAcquire();
+        limiter.release(FAST, ms(10), true);
+
+        //minLimit 아래로는 내려가지 않음
+        Assertions.assertThat(limiter.getLimit()).isEqualTo(1);
+    }
+
+    private static long ms(long millis) {
+        return TimeUnit.MILLISECONDS.toNanos(millis);
+    }
+}
@@ -0,0 +1,85 @@
+package hello.springtx.admission;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+@SpringBootTest(properties = {
+        "admission.enabled=true",
+        "admission.initial-limit=1",
+        "admission.min-limit=1",
+        "admission.max-limit=1"
+})
+@Import(AdmissionControlAspectTest.BlockingService.class)
+class AdmissionControlAspectTest {
+
+    @Autowired
+    BlockingService blockingService;
+
+    @Autowired
+    AdaptiveConcurrencyLimiter limiter;
+
+    @Test
+    void rejectOverLimit() throws Exception {
+        //given
+        long rejected = limiter.getRejected();
+        CountDownLatch entered = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<Void> first = CompletableFuture.runAsync(() -> blockingService.block(entered, release));
+        Assertions.assertThat(entered.await(5, TimeUnit.SECONDS)).isTrue();
+
+        //when
+        //limit 1을 첫 호출이 잡고 있으므로 트랜잭션을 시작하지 않고 바로 거절
+        Assertions.assertThatThrownBy(() -> blockingService.inTransaction())
+                .isInstanceOf(AdmissionRejectedException.class);
+        release.countDown();
+        first.get(5, TimeUnit.SECONDS);
+
+        //then
+        Assertions.assertThat(limiter.getRejected()).isEqualTo(rejected + 1);
+        Assertions.assertThat(limiter.getInFlight()).isZero();
+        Assertions.assertThat(blockingService.inTransaction()).isTrue();
+    }
+
+    @Test
+    void nestedCallIsNotCounted() {
+        //바깥 호출이 자리를 잡고 있으므로 트랜잭션 안의 서비스 호출은 세지 않는다
+        Assertions.assertThat(blockingService.nested()).isTrue();
+        Assertions.assertThat(limiter.getInFlight()).isZero();
+    }
+
+    @Service
+    static class BlockingService {
+
+        @Autowired
+        BlockingService self;
+
+        @Transactional
+        public void block(CountDownLatch entered, CountDownLatch release) {
+            entered.countDown();
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        @Transactional
+        public boolean inTransaction() {
+            return true;
+        }
+
+        @Transactional
+        public boolean nested() {
+            return self.inTransaction();
+        }
+    }
+}
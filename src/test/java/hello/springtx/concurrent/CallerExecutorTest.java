@@ -0,0 +1,193 @@
+package hello.springtx.concurrent;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import hello.springtx.propagation.LogRepository;
+import hello.springtx.propagation.MemberRepository;
+import hello.springtx.propagation.MemberService;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManagerFactory;
+import javax.sql.DataSource;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 가상 쓰레드(JDK 21 미만이면 플랫폼 쓰레드)에서 트랜잭션 바인딩, REQUIRES_NEW 보류, 커넥션 풀 사용, pinning 확인
+ * ./gradlew virtualThreadTest 로 JDK 21 가상 쓰레드에서 실행(-PtestJdk=21 이면 check에도 포함)
+ */
+@Slf4j
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:${random.uuid}",
+        "caller.executor.mode=virtual",
+        "admission.enabled=false"
+})
+class CallerExecutorTest {
+
+    static final int CALLERS = 200;
+
+    static final String PINNED_EVENT = "jdk.VirtualThreadPinned";
+
+    @Autowired
+    CallerExecutor callerExecutor;
+
+    @Autowired
+    MemberService memberService;
+
+    @Autowired
+    MemberRepository memberRepository;
+
+    @Autowired
+    LogRepository logRepository;
+
+    @Autowired
+    PlatformTransactionManager txManager;
+
+    @Autowired
+    EntityManagerFactory emf;
+
+    @Autowired
+    DataSource dataSource;
+
+    @Test
+    void virtualThread() throws Exception {
+        assumeVirtualThreads();
+
+        assertThat(callerExecutor.isVirtual()).isTrue();
+        assertThat(callerExecutor.submit(() -> VirtualThreads.isVirtual(Thread.currentThread())).get()).isTrue();
+    }
+
+    @Test
+    void transactionBinding() {
+        TransactionTemplate template = new TransactionTemplate(txManager);
+        Set<Object> holders = ConcurrentHashMap.newKeySet();
+        List<CompletableFuture<Void>> calls = new ArrayList<>();
+        for (int i = 0; i < CALLERS; i++) {
+            calls.add(callerExecutor.run(() -> {
+                //호출 쓰레드에 바인딩된 것이 없어야 한다
+                assertThat(TransactionSynchronizationManager.getResource(emf)).isNull();
+                template.executeWithoutResult(status -> {
+                    assertThat(TransactionSynchronizationManager.isActualTransactionActive()).isTrue();
+                    holders.add(TransactionSynchronizationManager.getResource(emf));
+                });
+                assertThat(TransactionSynchronizationManager.getResource(emf)).isNull();
+            }));
+        }
+        CompletableFuture.allOf(calls.toArray(CompletableFuture[]::new)).join();
+
+        //트랜잭션마다 자기 EntityManager를 가진다
+        assertThat(holders).hasSize(CALLERS);
+    }
+
+    @Test
+    void requiresNew() {
+        List<CompletableFuture<Void>> calls = new ArrayList<>();
+        for (int i = 0; i < CALLERS; i++) {
+            String username = "로그예외_callerExecutor_" + i;
+            calls.add(callerExecutor.run(() -> memberService.joinV2(username)));
+        }
+        CompletableFuture.allOf(calls.toArray(CompletableFuture[]::new)).join();
+
+        //로그 트랜잭션만 롤백되고, 보류됐던 회원 트랜잭션은 커밋된다
+        for (int i = 0; i < CALLERS; i++) {
+            String username = "로그예외_callerExecutor_" + i;
+            assertThat(memberRepository.find(username)).isPresent();
+            assertThat(logRepository.find(username)).isEmpty();
+        }
+    }
+
+    @Test
+    void pooling() throws Exception {
+        HikariPoolMXBean pool = ((HikariDataSource) dataSource).getHikariPoolMXBean();
+
+        //실행 중에 풀 상태를 계속 읽어서 커넥션을 기다린 호출이 있었는지 본다
+        AtomicBoolean running = new AtomicBoolean(true);
+        AtomicInteger maxAwaiting = new AtomicInteger();
+        AtomicInteger maxActive = new AtomicInteger();
+        Thread sampler = new Thread(() -> {
+            while (running.get()) {
+                maxAwaiting.accumulateAndGet(pool.getThreadsAwaitingConnection(), Math::max);
+                maxActive.accumulateAndGet(pool.getActiveConnections(), Math::max);
+                Thread.onSpinWait();
+            }
+        });
+        sampler.start();
+
+        List<CompletableFuture<Void>> calls = new ArrayList<>();
+        for (int i = 0; i < CALLERS; i++) {
+            String username = "callerExecutor_pooling_" + i;
+            calls.add(callerExecutor.run(() -> memberService.joinV2(username)));
+        }
+        CompletableFuture.allOf(calls.toArray(CompletableFuture[]::new)).join();
+        running.set(false);
+        sampler.join();
+
+        //세마포어에서 기다리므로 커넥션 풀에서 기다린 호출이 없어야 한다, REQUIRES_NEW로 호출당 2개까지 쓴다
+        log.info("pooling maxInDb={} maxActive={} maxAwaiting={}", callerExecutor.getMaxInDb(), maxActive, maxAwaiting);
+        assertThat(maxAwaiting.get()).isZero();
+        assertThat(maxActive.get()).isLessThanOrEqualTo(callerExecutor.getMaxInDb() * 2);
+    }
+
+    /**
+     * 가상 쓰레드가 synchronized/네이티브 프레임 안에서 막히면 캐리어 쓰레드가 묶인다(pinning)
+     * 세마포어 대기, 커넥션 획득, REQUIRES_NEW 보류/롤백 경로에서 JFR jdk.VirtualThreadPinned가 한 건도 없어야 한다
+     */
+    @Test
+    void noPinning() throws Exception {
+        assumeVirtualThreads();
+
+        List<RecordedEvent> pinned;
+        try (Recording recording = new Recording()) {
+            //기본 임계값(20ms)보다 짧게 묶인 것도 잡는다
+            recording.enable(PINNED_EVENT).withThreshold(Duration.ZERO).withStackTrace();
+            recording.start();
+
+            List<CompletableFuture<Void>> calls = new ArrayList<>();
+            for (int i = 0; i < CALLERS; i++) {
+                String username = (i % 2 == 0 ? "로그예외_" : "") + "callerExecutor_pinning_" + i;
+                calls.add(callerExecutor.run(() -> memberService.joinV2(username)));
+            }
+            CompletableFuture.allOf(calls.toArray(CompletableFuture[]::new)).join();
+
+            recording.stop();
+            Path file = Files.createTempFile("springtx-pinning", ".jfr");
+            recording.dump(file);
+            pinned = RecordingFile.readAllEvents(file).stream()
+                    .filter(e -> e.getEventType().getName().equals(PINNED_EVENT))
+                    .collect(Collectors.toList());
+            Files.delete(file);
+        }
+
+        pinned.forEach(e -> log.warn("pinned duration={} stack={}", e.getDuration(), e.getStackTrace()));
+        assertThat(pinned).isEmpty();
+    }
+
+    //virtualThreadTest(JDK 21)에서는 건너뛰지 않고 실패해야 한다
+    private static void assumeVirtualThreads() {
+        if (Boolean.getBoolean("virtualThreads.required")) {
+            assertThat(VirtualThreads.isSupported()).as("JDK 21 이상에서 실행해야 합니다").isTrue();
+        }
+        Assumptions.assumeTrue(VirtualThreads.isSupported(), "JDK 21 이상");
+    }
+}
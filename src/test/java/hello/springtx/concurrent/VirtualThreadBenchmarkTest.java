@@ -0,0 +1,68 @@
+package hello.springtx.concurrent;
+
+import hello.springtx.propagation.MemberService;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 동시 호출자 CALLERS명, 가상 쓰레드(호출마다 쓰레드) vs 플랫폼 쓰레드 풀 처리량과 p99
+ * ./gradlew benchmark -PtestJdk=21
+ */
+@Slf4j
+@Tag("benchmark")
+@ActiveProfiles("benchmark")
+@SpringBootTest(properties = {
+        "admission.enabled=false",
+        "spring.datasource.hikari.maximum-pool-size=20"
+})
+class VirtualThreadBenchmarkTest {
+
+    static final int CALLERS = 10_000;
+    static final int PLATFORM_THREADS = 200;
+    static final int DB_PERMITS = 10;
+
+    @Autowired
+    MemberService memberService;
+
+    @ParameterizedTest
+    @ValueSource(strings = {"platform", "virtual"})
+    void join(String mode) {
+        Assumptions.assumeTrue(!mode.equals("virtual") || VirtualThreads.isSupported(), "JDK 21 이상");
+        CallerExecutor executor = new CallerExecutor(mode, PLATFORM_THREADS, DB_PERMITS);
+        try {
+            long[] latencies = new long[CALLERS];
+            CompletableFuture<?>[] calls = new CompletableFuture<?>[CALLERS];
+            long start = System.nanoTime();
+            for (int i = 0; i < CALLERS; i++) {
+                int caller = i;
+                String username = mode + "_" + caller;
+                long submitted = System.nanoTime();
+                calls[i] = executor.run(() -> {
+                    memberService.joinV2(username);
+                    latencies[caller] = System.nanoTime() - submitted;
+                });
+            }
+            CompletableFuture.allOf(calls).join();
+            long elapsed = System.nanoTime() - start;
+
+            Arrays.sort(latencies);
+            log.warn("mode={} callers={} throughput={}/s p50={}ms p99={}ms total={}ms maxInDb={}",
+                    mode, CALLERS, CALLERS * 1_000_000_000L / elapsed,
+                    TimeUnit.NANOSECONDS.toMillis(latencies[CALLERS / 2]),
+                    TimeUnit.NANOSECONDS.toMillis(latencies[CALLERS * 99 / 100]),
+                    TimeUnit.NANOSECONDS.toMillis(elapsed), executor.getMaxInDb());
+        } finally {
+            executor.close();
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package hello.springtx.order;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 64쓰레드로 계좌 1개 vs 1000개에 주문, stripe 수에 따른 처리량 비교
+ */
+@Slf4j
+@Tag("benchmark")
+@ActiveProfiles("benchmark")
+@SpringBootTest(properties = {
+        "admission.enabled=false",
+        "spring.datasource.hikari.maximum-pool-size=64"
+})
+class AccountContentionBenchmarkTest {
+
+    static final int THREADS = 64;
+    static final int ORDERS_PER_THREAD = 200;
+
+    @Autowired
+    AccountService accountService;
+
+    @Autowired
+    OrderService orderService;
+
+    @ParameterizedTest
+    @CsvSource({"1, 1", "1, 16", "1000, 1", "1000, 16"})
+    void contention(int accounts, int stripes) throws Exception {
+        String prefix = "bench_" + accounts + "_" + stripes + "_";
+        for (int i = 0; i < accounts; i++) {
+            accountService.open(prefix + i, Long.MAX_VALUE / 2, stripes);
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(THREADS);
+        AtomicLong completed = new AtomicLong();
+        for (int t = 0; t < THREADS; t++) {
+            executor.execute(() -> {
+                try {
+                    start.await();
+                    for (int i = 0; i < ORDERS_PER_THREAD; i++) {
+                        Order order = new Order();
+                        order.setUserName(prefix + ThreadLocalRandom.current().nextInt(accounts));
+                        order.setAmount(1L);
+                        orderService.order(order);
+                        completed.incrementAndGet();
+                    }
+                } catch (Exception e) {
+                    log.warn("주문 실패", e);
+                } finally {
+                    done.countDown();
+                }
+            });
+        }
+
+        long begin = System.nanoTime();
+        start.countDown();
+        done.await();
+        long elapsed = System.nanoTime() - begin;
+        executor.shutdown();
+
+        log.warn("accounts={} stripes={} threads={} orders={} elapsed={}ms throughput={}/s",
+                accounts, stripes, THREADS, completed.get(), TimeUnit.NANOSECONDS.toMillis(elapsed),
+                completed.get() * 1_000_000_000L / elapsed);
+    }
+}
@@ -0,0 +1,156 @@
+package hello.springtx.order;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+@SpringBootTest(properties = "admission.enabled=false")
+class AccountServiceTest {
+
+    @Autowired
+    AccountService accountService;
+
+    @Autowired
+    OrderService orderService;
+
+    @Autowired
+    OrderRepository orderRepository;
+
+    @Autowired
+    BalanceReservations balanceReservations;
+
+    @Autowired
+    AccountRepository accountRepository;
+
+    @Autowired
+    AccountStripeRepository accountStripeRepository;
+
+    @Autowired
+    PlatformTransactionManager txManager;
+
+    @Test
+    void balanceMismatchReloads() {
+        //given
+        accountService.open("mismatch", 1000, 1);
+        Long accountId = accountRepository.findByUserName("mismatch").orElseThrow().getId();
+        AccountStripe stripe = accountStripeRepository.findByAccountIdOrderByStripe(accountId).get(0);
+        stripe.setBalance(100);
+        accountStripeRepository.save(stripe);
+
+        //when
+        //메모리는 1000이라 예약은 되지만 DB 차감이 실패한다
+        TransactionTemplate tx = new TransactionTemplate(txManager);
+        Assertions.assertThatThrownBy(() -> tx.executeWithoutResult(status -> withdraw("mismatch", 500)))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageStartingWith(AccountService.BALANCE_MISMATCH);
+
+        //then
+        //메모리 잔고를 버렸으므로 다음 주문은 DB 잔고(100)로 예약해서 잔고 부족이 된다
+        Assertions.assertThatThrownBy(() -> tx.executeWithoutResult(status -> withdraw("mismatch", 500)))
+                .hasCauseInstanceOf(NotEnoughMoneyException.class);
+        tx.executeWithoutResult(status -> withdraw("mismatch", 100));
+        Assertions.assertThat(accountService.getBalance("mismatch")).isZero();
+    }
+
+    private void withdraw(String userName, long amount) {
+        try {
+            accountService.withdraw(userName, null, amount);
+        } catch (NotEnoughMoneyException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Test
+    void rollback() throws Exception {
+        //given
+        accountService.open("rollback", 1000, 4);
+
+        //when
+        TransactionTemplate tx = new TransactionTemplate(txManager);
+        tx.executeWithoutResult(status -> {
+            try {
+                accountService.withdraw("rollback", null, 700);
+            } catch (NotEnoughMoneyException e) {
+                throw new IllegalStateException(e);
+            }
+            status.setRollbackOnly();
+        });
+
+        //then
+        //롤백되면 DB 잔고는 그대로고 메모리 예약도 풀려서 전액 주문이 되어야함
+        Assertions.assertThat(accountService.getBalance("rollback")).isEqualTo(1000);
+        Order order = new Order();
+        order.setUserName("rollback");
+        order.setAmount(1000L);
+        orderService.order(order);
+        Assertions.assertThat(accountService.getBalance("rollback")).isZero();
+    }
+
+    @Test
+    void accountNotFound() {
+        //계좌가 없는 것은 잔고 부족이 아니라 시스템 예외
+        Assertions.assertThatThrownBy(() -> accountService.withdraw("accountNotFound", null, 100))
+                .isInstanceOf(AccountNotFoundException.class);
+    }
+
+    @Test
+    void registerAfterLoad() {
+        //given
+        //커밋 직후 afterCommit 전에 다른 주문이 DB에서 잔고를 읽어 예약한 상황
+        Account account = accountService.open("registerAfterLoad", 1000, 4);
+        long[] reserved = balanceReservations.reserve(account.getId(), 400);
+
+        //when
+        balanceReservations.register(account.getId(), new long[]{250, 250, 250, 250});
+
+        //then
+        //예약된 400이 되살아나지 않아야함
+        Assertions.assertThat(reserved).isNotNull();
+        Assertions.assertThat(balanceReservations.reserve(account.getId(), 700)).isNull();
+        Assertions.assertThat(balanceReservations.reserve(account.getId(), 600)).isNotNull();
+    }
+
+    @Test
+    void concurrentWithdraw() throws Exception {
+        //given
+        accountService.open("concurrentWithdraw", 500, 8);
+
+        //when
+        //16쓰레드가 1씩 800번 주문, 잔고 500만큼만 완료되어야함
+        ExecutorService executor = Executors.newFixedThreadPool(16);
+        List<Future<Long>> futures = new ArrayList<>();
+        for (int i = 0; i < 800; i++) {
+            futures.add(executor.submit(() -> {
+                Order order = new Order();
+                order.setUserName("concurrentWithdraw");
+                order.setAmount(1L);
+                try {
+                    orderService.order(order);
+                } catch (NotEnoughMoneyException e) {
+                    //대기 상태로 커밋
+                }
+                return order.getId();
+            }));
+        }
+        long completed = 0;
+        for (Future<Long> future : futures) {
+            if (orderRepository.findById(future.get()).get().getPayStatus() == PayStatus.COMPLETED) {
+                completed++;
+            }
+        }
+        executor.shutdown();
+
+        //then
+        Assertions.assertThat(completed).isEqualTo(500);
+        Assertions.assertThat(accountService.getBalance("concurrentWithdraw")).isZero();
+    }
+}
@@ -0,0 +1,81 @@
+package hello.springtx.order;
+
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.engine.spi.SelfDirtinessTracker;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import java.lang.management.ManagementFactory;
+import java.util.List;
+
+/**
+ * 관리 중인 Order가 많을 때 flush 비용 측정
+ * ./gradlew benchmark                    -> 바이트코드 향상(dirty tracking)
+ * ./gradlew benchmark -PdisableEnhance   -> 스냅샷 비교
+ */
+@Slf4j
+@Tag("benchmark")
+@ActiveProfiles("benchmark")
+@SpringBootTest(properties = {
+        "logging.level.hello.springtx=INFO",
+        "spring.jpa.properties.hibernate.jdbc.batch_size=100",
+        "tx.deadline.default-ms=0"
+})
+class DirtyCheckingBenchmarkTest {
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    PlatformTransactionManager txManager;
+
+    @ParameterizedTest
+    @ValueSource(ints = {1_000, 10_000, 100_000})
+    void flush(int count) {
+        TransactionTemplate tx = new TransactionTemplate(txManager);
+        tx.executeWithoutResult(status -> {
+            for (int i = 0; i < count; i++) {
+                Order order = new Order();
+                order.setUserName("bench_" + count);
+                order.setPayStatus(PayStatus.WAITING);
+                em.persist(order);
+                if (i % 1000 == 999) {
+                    em.flush();
+                    em.clear();
+                }
+            }
+        });
+
+        tx.executeWithoutResult(status -> {
+            List<Order> orders = em.createQuery("select o from Order o where o.userName = :userName", Order.class)
+                    .setParameter("userName", "bench_" + count)
+                    .getResultList();
+            //1%만 변경
+            for (int i = 0; i < orders.size(); i += 100) {
+                orders.get(i).setPayStatus(PayStatus.COMPLETED);
+            }
+
+            com.sun.management.ThreadMXBean threadMXBean =
+                    (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+            long threadId = Thread.currentThread().getId();
+            long allocatedBefore = threadMXBean.getThreadAllocatedBytes(threadId);
+            long start = System.nanoTime();
+
+            em.flush();
+
+            long elapsed = System.nanoTime() - start;
+            long allocated = threadMXBean.getThreadAllocatedBytes(threadId) - allocatedBefore;
+            log.info("mode={} managed={} flush={}ms allocated={}KB",
+                    SelfDirtinessTracker.class.isAssignableFrom(Order.class) ? "dirty-tracking" : "snapshot",
+                    orders.size(), elapsed / 1_000_000, allocated / 1024);
+            status.setRollbackOnly();
+        });
+    }
+}
@@ -0,0 +1,65 @@
+package hello.springtx.order;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * 64쓰레드 동시 주문, 주문마다 커밋 vs 그룹 커밋의 초당 커밋 수, 처리량, p99
+ */
+@Slf4j
+@Tag("benchmark")
+@ActiveProfiles("benchmark")
+@SpringBootTest(properties = {
+        "order.group-commit.enabled=true",
+        "order.group-commit.max-batch=64",
+        "order.group-commit.window-us=500",
+        "order.group-commit.flushers=4",
+        "admission.enabled=false",
+        "spring.datasource.hikari.maximum-pool-size=64"
+})
+class GroupCommitBenchmarkTest {
+
+    static final int THREADS = 64;
+    static final int ORDERS_PER_THREAD = 300;
+
+    @Autowired
+    OrderService orderService;
+
+    @Autowired
+    OrderGroupCommitter orderGroupCommitter;
+
+    @Autowired
+    PlatformTransactionManager txManager;
+
+    @Test
+    void commit() throws Exception {
+        //트랜잭션 안에서 호출하면 그룹 커밋을 거치지 않는다
+        TransactionTemplate txTemplate = new TransactionTemplate(txManager);
+        measure("single", order -> txTemplate.executeWithoutResult(status -> {
+            try {
+                orderService.order(order);
+            } catch (NotEnoughMoneyException e) {
+                throw new IllegalStateException(e);
+            }
+        }), THREADS * ORDERS_PER_THREAD);
+
+        long commits = orderGroupCommitter.getCommits();
+        measure("group", orderService::order, 0);
+        log.warn("group batches={} avgBatch={}", orderGroupCommitter.getCommits() - commits,
+                String.format("%.1f", (double) THREADS * ORDERS_PER_THREAD / (orderGroupCommitter.getCommits() - commits)));
+    }
+
+    private void measure(String mode, OrderLoad.OrderCall call, long singleCommits) throws Exception {
+        long commits = orderGroupCommitter.getCommits();
+        OrderLoad load = OrderLoad.run(mode, THREADS, ORDERS_PER_THREAD, call);
+        long totalCommits = singleCommits + orderGroupCommitter.getCommits() - commits;
+        log.warn("mode={} orders={} commits/s={} orders/s={} p50={}us p99={}us", mode, load.orders(),
+                load.perSecond(totalCommits), load.perSecond(load.orders()), load.p50Micros(), load.p99Micros());
+    }
+}
@@ -0,0 +1,194 @@
+package hello.springtx.order;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionTimedOutException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.mockito.Mockito.*;
+
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:${random.uuid}",
+        "order.group-commit.enabled=true",
+        "order.group-commit.max-batch=16",
+        "order.group-commit.window-us=200000",
+        "order.group-commit.flushers=1",
+        "admission.enabled=false"
+})
+class OrderGroupCommitTest {
+
+    static final int CALLERS = 16;
+
+    @Autowired
+    OrderService orderService;
+
+    @Autowired
+    OrderRepository orderRepository;
+
+    @Autowired
+    AccountService accountService;
+
+    @Autowired
+    OrderGroupCommitter orderGroupCommitter;
+
+    @Autowired
+    PlatformTransactionManager txManager;
+
+    @Test
+    void groupCommit() throws Exception {
+        accountService.open("잔고부족_groupCommit", 500, 4);
+        long commits = orderGroupCommitter.getCommits();
+
+        //정상 14건, 시스템 예외 1건, 잔고 부족 1건을 동시에 주문
+        List<Order> orders = new ArrayList<>();
+        for (int i = 0; i < CALLERS - 2; i++) {
+            orders.add(order("groupCommit_" + i, null));
+        }
+        Order runtimeException = order("예외", null);
+        Order notEnoughMoney = order("잔고부족_groupCommit", 1000L);
+        orders.add(runtimeException);
+        orders.add(notEnoughMoney);
+
+        ExecutorService executor = Executors.newFixedThreadPool(CALLERS);
+        CountDownLatch ready = new CountDownLatch(CALLERS);
+        List<Future<Throwable>> results = new ArrayList<>();
+        for (Order order : orders) {
+            results.add(executor.submit(() -> {
+                ready.countDown();
+                ready.await();
+                try {
+                    orderService.order(order);
+                    return null;
+                } catch (Exception e) {
+                    return e;
+                }
+            }));
+        }
+        List<Throwable> errors = new ArrayList<>();
+        for (Future<Throwable> result : results) {
+            errors.add(result.get());
+        }
+        executor.shutdown();
+
+        //호출자마다 자기 결과를 받는다
+        for (int i = 0; i < CALLERS - 2; i++) {
+            Assertions.assertThat(errors.get(i)).isNull();
+            Assertions.assertThat(orderRepository.findById(orders.get(i).getId()).orElseThrow().getPayStatus())
+                    .isEqualTo(PayStatus.COMPLETED);
+        }
+        Assertions.assertThat(errors.get(CALLERS - 2)).isInstanceOf(RuntimeException.class);
+        //직접 호출과 같이 롤백된 주문도 받은 id는 남는다
+        Assertions.assertThat(runtimeException.getId()).isNotNull();
+        Assertions.assertThat(orderRepository.findById(runtimeException.getId())).isEmpty();
+        Assertions.assertThat(orderRepository.findByUserName("예외")).isEmpty();
+        Assertions.assertThat(errors.get(CALLERS - 1)).isInstanceOf(NotEnoughMoneyException.class);
+        Assertions.assertThat(orderRepository.findByUserName("잔고부족_groupCommit"))
+                .extracting(Order::getPayStatus).containsExactly(PayStatus.WAITING);
+
+        //커밋 수가 주문 수보다 적다
+        Assertions.assertThat(orderGroupCommitter.getCommits() - commits).isLessThan(CALLERS - 1);
+    }
+
+    @Test
+    void singleCaller() throws NotEnoughMoneyException {
+        long commits = orderGroupCommitter.getCommits();
+
+        //트랜잭션이 없는 호출은 그룹 커밋, 결과는 직접 호출과 같다
+        Order order = order("groupCommit_single", null);
+        orderService.order(order);
+
+        Assertions.assertThat(orderRepository.findById(order.getId()).orElseThrow().getPayStatus()).isEqualTo(PayStatus.COMPLETED);
+        Assertions.assertThat(orderGroupCommitter.getCommits()).isEqualTo(commits + 1);
+    }
+
+    @Test
+    void flusherError() {
+        //RuntimeException이 아닌 실패도 호출자에게 돌려준다, 배치를 버리고 기다리게 두지 않는다
+        ObjectProvider<OrderService> provider = mock(ObjectProvider.class);
+        when(provider.getObject()).thenThrow(new NoClassDefFoundError("OrderService"));
+        OrderGroupCommitter committer = new OrderGroupCommitter(provider, txManager, 16, 1000, 1, 5000);
+        try {
+            Assertions.assertThatThrownBy(() -> committer.order(order("groupCommit_error", null)))
+                    .isInstanceOf(NoClassDefFoundError.class);
+            //flusher는 계속 돈다
+            Assertions.assertThatThrownBy(() -> committer.order(order("groupCommit_error", null)))
+                    .isInstanceOf(NoClassDefFoundError.class);
+        } finally {
+            committer.close();
+        }
+    }
+
+    @Test
+    void timeout() {
+        //flusher가 없으면 꺼내가지 않으므로 timeout 뒤에 실패하고 주문은 실행되지 않는다
+        ObjectProvider<OrderService> provider = mock(ObjectProvider.class);
+        OrderGroupCommitter committer = new OrderGroupCommitter(provider, txManager, 16, 1000, 0, 100);
+        try {
+            Assertions.assertThatThrownBy(() -> committer.order(order("groupCommit_timeout", null)))
+                    .isInstanceOf(TransactionTimedOutException.class);
+            verify(provider, never()).getObject();
+        } finally {
+            committer.close();
+        }
+    }
+
+    @Test
+    void timeoutWhileCommitting() {
+        //flusher가 배치를 실행하는 도중에 timeout이 지나도 실패로 알리지 않고 커밋 결과를 받는다
+        CountDownLatch running = new CountDownLatch(1);
+        OrderService slow = new OrderService(orderRepository, accountService, null) {
+            @Override
+            public void order(Order order) throws NotEnoughMoneyException {
+                running.countDown();
+                try {
+                    Thread.sleep(500);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                super.order(order);
+            }
+        };
+        ObjectProvider<OrderService> provider = mock(ObjectProvider.class);
+        when(provider.getObject()).thenReturn(slow);
+        OrderGroupCommitter committer = new OrderGroupCommitter(provider, txManager, 16, 1000, 1, 100);
+        try {
+            Order order = order("groupCommit_slow", null);
+            Assertions.assertThatCode(() -> committer.order(order)).doesNotThrowAnyException();
+
+            Assertions.assertThat(running.getCount()).isZero();
+            Assertions.assertThat(orderRepository.findById(order.getId()).orElseThrow().getPayStatus())
+                    .isEqualTo(PayStatus.COMPLETED);
+            Assertions.assertThat(orderRepository.findByUserName("groupCommit_slow")).hasSize(1);
+        } finally {
+            committer.close();
+        }
+    }
+
+    @Test
+    void rejectAfterClose() {
+        ObjectProvider<OrderService> provider = mock(ObjectProvider.class);
+        OrderGroupCommitter committer = new OrderGroupCommitter(provider, txManager, 16, 1000, 1, 5000);
+        committer.close();
+
+        Assertions.assertThatThrownBy(() -> committer.order(order("groupCommit_closed", null)))
+                .isInstanceOf(IllegalStateException.class);
+        verify(provider, never()).getObject();
+    }
+
+    private Order order(String userName, Long amount) {
+        Order order = new Order();
+        order.setUserName(userName);
+        order.setAmount(amount);
+        return order;
+    }
+}
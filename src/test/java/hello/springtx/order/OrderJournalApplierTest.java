@@ -0,0 +1,283 @@
+package hello.springtx.order;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.CannotAcquireLockException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionTimedOutException;
+
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@SpringBootTest(properties = {
+        "order.journal.enabled=true",
+        "order.journal.dir=${java.io.tmpdir}/springtx-order-journal-${random.uuid}",
+        "order.journal.segment-size-mb=1"
+})
+class OrderJournalApplierTest {
+
+    @Autowired
+    OrderService orderService;
+
+    @Autowired
+    OrderRepository orderRepository;
+
+    @Autowired
+    AccountService accountService;
+
+    @Autowired
+    OrderJournal orderJournal;
+
+    @Autowired
+    OrderJournalApplier orderJournalApplier;
+
+    @Autowired
+    OrderJournalCheckpointRepository checkpointRepository;
+
+    @Autowired
+    OrderJournalDeadLetterRepository deadLetterRepository;
+
+    @Autowired
+    PlatformTransactionManager txManager;
+
+    @Test
+    void accept() throws InterruptedException {
+        Order order = new Order();
+        order.setUserName("journal_accept");
+
+        long offset = orderService.accept(order);
+
+        Assertions.assertThat(orderJournalApplier.awaitApplied(offset, 5000)).isTrue();
+        List<Order> orders = orderRepository.findByUserName("journal_accept");
+        Assertions.assertThat(orders).hasSize(1);
+        Assertions.assertThat(orders.get(0).getPayStatus()).isEqualTo(PayStatus.COMPLETED);
+        Assertions.assertThat(checkpointRepository.findById(OrderJournalApplier.CHECKPOINT_ID).orElseThrow()
+                .getAppliedOffset()).isGreaterThanOrEqualTo(offset);
+    }
+
+    @Test
+    void bizException() throws InterruptedException {
+        accountService.open("잔고부족_journal", 500, 4);
+        Order order = new Order();
+        order.setUserName("잔고부족_journal");
+        order.setAmount(1000L);
+
+        //잔고 부족은 적용 시점에 대기로 반영된다
+        long offset = orderService.accept(order);
+
+        Assertions.assertThat(orderJournalApplier.awaitApplied(offset, 5000)).isTrue();
+        Assertions.assertThat(orderRepository.findByUserName("잔고부족_journal"))
+                .extracting(Order::getPayStatus).containsExactly(PayStatus.WAITING);
+        Assertions.assertThat(accountService.getBalance("잔고부족_journal")).isEqualTo(500);
+    }
+
+    @Test
+    void runtimeException() {
+        Order order = new Order();
+        order.setUserName("예외");
+
+        //저널에 쓰기 전에 거절
+        long synced = orderJournal.getSyncedOffset();
+        Assertions.assertThatThrownBy(() -> orderService.accept(order)).isInstanceOf(RuntimeException.class);
+        Assertions.assertThat(orderJournal.getSyncedOffset()).isEqualTo(synced);
+    }
+
+    @Test
+    void restart() throws InterruptedException {
+        Order order = new Order();
+        order.setUserName("journal_restart");
+        long offset = orderService.accept(order);
+        Assertions.assertThat(orderJournalApplier.awaitApplied(offset, 5000)).isTrue();
+
+        //재시작한 적용기는 체크포인트부터 이어가므로 같은 주문을 다시 넣지 않는다
+        OrderJournalApplier restarted = new OrderJournalApplier(orderJournal, orderService, checkpointRepository,
+                deadLetterRepository, txManager, 500, 60_000, 100, 10_000);
+        try {
+            restarted.start();
+            Assertions.assertThat(restarted.getAppliedOffset()).isGreaterThanOrEqualTo(offset);
+            restarted.applyBatch();
+        } finally {
+            restarted.close();
+        }
+        Assertions.assertThat(orderRepository.findByUserName("journal_restart")).hasSize(1);
+    }
+
+    @Test
+    void fallbackFailsMidway() throws Exception {
+        //배치: 정상 2건, poison 1건, 락 실패 1건(한 번만), 정상 1건
+        String prefix = "journal_midway_" + UUID.randomUUID() + "_";
+        OrderJournal journal = new OrderJournal(Files.createTempDirectory("springtx-order-journal"), 1024 * 1024);
+        FailingOrderService failing = new FailingOrderService(prefix + "lock");
+        String checkpointId = "test-" + UUID.randomUUID();
+        OrderJournalApplier applier = new OrderJournalApplier(journal, failing, checkpointRepository,
+                deadLetterRepository, txManager, checkpointId, 500, 60_000, 100, 10_000);
+        try {
+            journal.append(prefix + "1", null);
+            long second = journal.append(prefix + "2", null);
+            long poison = journal.append("예외", null);
+            journal.append(prefix + "lock", null);
+            long last = journal.append(prefix + "3", null);
+
+            //배치가 poison으로 롤백되고, 한 건씩 적용하다 락 실패에서 멈춘다
+            Assertions.assertThatThrownBy(applier::applyBatch).isInstanceOf(CannotAcquireLockException.class);
+            Assertions.assertThat(applier.getAppliedOffset()).isEqualTo(poison);
+            Assertions.assertThat(checkpointRepository.findById(checkpointId).orElseThrow().getAppliedOffset()).isEqualTo(poison);
+
+            //다시 적용해도 이미 커밋한 주문은 중복되지 않는다
+            applier.applyBatch();
+            Assertions.assertThat(applier.getAppliedOffset()).isEqualTo(last);
+            Assertions.assertThat(checkpointRepository.findById(checkpointId).orElseThrow().getAppliedOffset()).isEqualTo(last);
+            for (String userName : List.of(prefix + "1", prefix + "2", prefix + "lock", prefix + "3")) {
+                Assertions.assertThat(orderRepository.findByUserName(userName)).as(userName).hasSize(1);
+            }
+
+            //poison만 dead letter에 남는다
+            Assertions.assertThat(deadLetterRepository.findByCheckpointId(checkpointId))
+                    .extracting(OrderJournalDeadLetter::getJournalOffset, OrderJournalDeadLetter::getUserName)
+                    .containsExactly(Assertions.tuple(second, "예외"));
+        } finally {
+            applier.close();
+            journal.close();
+        }
+    }
+
+    @Test
+    void transientNotCheckpointed() throws Exception {
+        String userName = "journal_transient_" + UUID.randomUUID();
+        OrderJournal journal = new OrderJournal(Files.createTempDirectory("springtx-order-journal"), 1024 * 1024);
+        FailingOrderService failing = new FailingOrderService(userName);
+        String checkpointId = "test-" + UUID.randomUUID();
+        OrderJournalApplier applier = new OrderJournalApplier(journal, failing, checkpointRepository,
+                deadLetterRepository, txManager, checkpointId, 500, 60_000, 100, 10_000);
+        try {
+            long offset = journal.append(userName, null);
+            failing.timeout = true;
+
+            //데드라인 초과는 건너뛰지 않고 체크포인트도 옮기지 않는다
+            Assertions.assertThatThrownBy(applier::applyBatch).isInstanceOf(TransactionTimedOutException.class);
+            Assertions.assertThat(applier.getAppliedOffset()).isZero();
+            Assertions.assertThat(checkpointRepository.findById(checkpointId)).isEmpty();
+            Assertions.assertThat(orderRepository.findByUserName(userName)).isEmpty();
+
+            Assertions.assertThatThrownBy(applier::applyBatch).isInstanceOf(CannotAcquireLockException.class);
+            Assertions.assertThat(applier.getAppliedOffset()).isZero();
+
+            applier.applyBatch();
+            Assertions.assertThat(applier.getAppliedOffset()).isEqualTo(offset);
+            Assertions.assertThat(orderRepository.findByUserName(userName)).hasSize(1);
+            Assertions.assertThat(deadLetterRepository.findByCheckpointId(checkpointId)).isEmpty();
+        } finally {
+            applier.close();
+            journal.close();
+        }
+    }
+
+    @Test
+    void isTransient() {
+        Assertions.assertThat(OrderJournalApplier.isTransient(new CannotAcquireLockException("lock"))).isTrue();
+        Assertions.assertThat(OrderJournalApplier.isTransient(new TransactionTimedOutException("deadline"))).isTrue();
+        //잔고 불일치는 backoff로 계속 다시 하지 않는다
+        RuntimeException mismatch = new RuntimeException(
+                new IllegalStateException(AccountService.BALANCE_MISMATCH + ". accountId=1"));
+        Assertions.assertThat(OrderJournalApplier.isTransient(mismatch)).isFalse();
+        Assertions.assertThat(OrderJournalApplier.isBalanceMismatch(mismatch)).isTrue();
+        Assertions.assertThat(OrderJournalApplier.isTransient(new RuntimeException("시스템 예외"))).isFalse();
+        Assertions.assertThat(OrderJournalApplier.isTransient(new AccountNotFoundException("계좌 없음"))).isFalse();
+    }
+
+    @Test
+    void balanceMismatch() throws Exception {
+        //잔고 불일치는 한 번만 다시 적용하고, 그래도 실패하면 dead letter로 옮겨서 뒤 주문을 막지 않는다
+        String prefix = "journal_mismatch_" + UUID.randomUUID() + "_";
+        OrderJournal journal = new OrderJournal(Files.createTempDirectory("springtx-order-journal"), 1024 * 1024);
+        FailingOrderService failing = new FailingOrderService(prefix + "once");
+        String checkpointId = "test-" + UUID.randomUUID();
+        OrderJournalApplier applier = new OrderJournalApplier(journal, failing, checkpointRepository,
+                deadLetterRepository, txManager, checkpointId, 500, 60_000, 100, 10_000);
+        try {
+            failing.lock = false;
+            failing.mismatches.set(1);
+            journal.append(prefix + "once", null);
+            long after = journal.append(prefix + "after", null);
+
+            applier.applyBatch();
+            Assertions.assertThat(applier.getAppliedOffset()).isEqualTo(after);
+            Assertions.assertThat(orderRepository.findByUserName(prefix + "once")).hasSize(1);
+            Assertions.assertThat(orderRepository.findByUserName(prefix + "after")).hasSize(1);
+            Assertions.assertThat(deadLetterRepository.findByCheckpointId(checkpointId)).isEmpty();
+
+            //계속 어긋나면 poison
+            failing.mismatches.set(Integer.MAX_VALUE);
+            journal.append(prefix + "once", null);
+            long last = journal.append(prefix + "last", null);
+            applier.applyBatch();
+            Assertions.assertThat(applier.getAppliedOffset()).isEqualTo(last);
+            Assertions.assertThat(orderRepository.findByUserName(prefix + "once")).hasSize(1);
+            Assertions.assertThat(orderRepository.findByUserName(prefix + "last")).hasSize(1);
+            Assertions.assertThat(deadLetterRepository.findByCheckpointId(checkpointId))
+                    .extracting(OrderJournalDeadLetter::getUserName).containsExactly(prefix + "once");
+        } finally {
+            applier.close();
+            journal.close();
+        }
+    }
+
+    @Test
+    void checkpointBeyondJournal() throws Exception {
+        //저널 디렉터리가 비었는데 체크포인트가 남아 있으면 새 주문이 적용되지 않으므로 기동하지 않는다
+        OrderJournal journal = new OrderJournal(Files.createTempDirectory("springtx-order-journal"), 1024 * 1024);
+        String checkpointId = "test-" + UUID.randomUUID();
+        checkpointRepository.save(new OrderJournalCheckpoint(checkpointId, 1_000_000));
+        OrderJournalApplier applier = new OrderJournalApplier(journal, orderService, checkpointRepository,
+                deadLetterRepository, txManager, checkpointId, 500, 60_000, 100, 10_000);
+        try {
+            Assertions.assertThatThrownBy(applier::start)
+                    .isInstanceOf(IllegalStateException.class)
+                    .hasMessageContaining("appliedOffset=1000000");
+        } finally {
+            applier.close();
+            journal.close();
+        }
+    }
+
+    /**
+     * failUserName 주문을 한 번 락 실패로(timeout이면 그 전에 데드라인 초과도 한 번) 돌려보낸다
+     * mismatches가 남아 있으면 잔고 불일치로 돌려보낸다
+     * 프록시가 아니라서 @Transactional 대신 OrderJournalApplier 트랜잭션에 그대로 참여한다
+     */
+    class FailingOrderService extends OrderService {
+
+        private final String failUserName;
+        private final Set<String> failed = ConcurrentHashMap.newKeySet();
+        final AtomicInteger mismatches = new AtomicInteger();
+        volatile boolean timeout;
+        volatile boolean lock = true;
+
+        FailingOrderService(String failUserName) {
+            super(orderRepository, accountService, null);
+            this.failUserName = failUserName;
+        }
+
+        @Override
+        public void order(Order order) throws NotEnoughMoneyException {
+            if (order.getUserName().equals(failUserName)) {
+                if (timeout && failed.add("timeout")) {
+                    throw new TransactionTimedOutException("트랜잭션 데드라인이 지났습니다");
+                }
+                if (mismatches.getAndUpdate(n -> Math.max(0, n - 1)) > 0) {
+                    throw new IllegalStateException(AccountService.BALANCE_MISMATCH + ". userName=" + failUserName);
+                }
+                if (lock && failed.add("lock")) {
+                    throw new CannotAcquireLockException("락 대기 시간 초과");
+                }
+            }
+            super.order(order);
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package hello.springtx.order;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 주문 응답 지연/처리량, 동기 JPA 트랜잭션(order) vs 저널 fsync 후 응답(accept)
+ */
+@Slf4j
+@Tag("benchmark")
+@ActiveProfiles("benchmark")
+@SpringBootTest(properties = {
+        "order.journal.enabled=true",
+        "order.journal.dir=${java.io.tmpdir}/springtx-order-journal-${random.uuid}",
+        "admission.enabled=false",
+        "spring.datasource.hikari.maximum-pool-size=32"
+})
+class OrderJournalBenchmarkTest {
+
+    static final int THREADS = 32;
+    static final int ORDERS_PER_THREAD = 500;
+
+    @Autowired
+    OrderService orderService;
+
+    @Autowired
+    OrderJournal orderJournal;
+
+    @Autowired
+    OrderJournalApplier orderJournalApplier;
+
+    @Test
+    void acknowledge() throws Exception {
+        measure("sync", orderService::order);
+
+        long syncs = orderJournal.getSyncCount();
+        AtomicLong lastOffset = new AtomicLong();
+        long start = System.nanoTime();
+        measure("journal", order -> {
+            long offset = orderService.accept(order);
+            lastOffset.accumulateAndGet(offset, Math::max);
+        });
+        orderJournalApplier.awaitApplied(lastOffset.get(), 60_000);
+        log.warn("journal applied all={}ms fsync={} orders={}",
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start),
+                orderJournal.getSyncCount() - syncs, THREADS * ORDERS_PER_THREAD);
+    }
+
+    private void measure(String mode, OrderLoad.OrderCall call) throws Exception {
+        OrderLoad load = OrderLoad.run(mode, THREADS, ORDERS_PER_THREAD, call);
+        log.warn("mode={} orders={} throughput={}/s p50={}us p99={}us", mode, load.orders(),
+                load.perSecond(load.orders()), load.p50Micros(), load.p99Micros());
+    }
+}
@@ -0,0 +1,90 @@
+package hello.springtx.order;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.stream.Stream;
+
+class OrderJournalTest {
+
+    static final int SEGMENT_SIZE = 1024;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void appendAndRead() {
+        OrderJournal journal = new OrderJournal(dir, SEGMENT_SIZE);
+        long first = journal.append("정상", null);
+        long second = journal.append("잔고부족", 1000L);
+
+        List<OrderJournalEntry> entries = journal.read(0, 10);
+
+        Assertions.assertThat(entries).hasSize(2);
+        Assertions.assertThat(entries.get(0).getUserName()).isEqualTo("정상");
+        Assertions.assertThat(entries.get(0).getAmount()).isNull();
+        Assertions.assertThat(entries.get(0).getNextOffset()).isEqualTo(first);
+        Assertions.assertThat(entries.get(1).getAmount()).isEqualTo(1000L);
+        Assertions.assertThat(entries.get(1).getNextOffset()).isEqualTo(second);
+        Assertions.assertThat(journal.read(first, 10)).hasSize(1);
+        Assertions.assertThat(journal.getSyncedOffset()).isEqualTo(second);
+    }
+
+    @Test
+    void recover() {
+        OrderJournal journal = new OrderJournal(dir, SEGMENT_SIZE);
+        journal.append("정상1", null);
+        long tail = journal.append("정상2", null);
+        journal.close();
+
+        //다시 열면 마지막 레코드 뒤부터 이어서 쓴다
+        OrderJournal reopened = new OrderJournal(dir, SEGMENT_SIZE);
+        Assertions.assertThat(reopened.getSyncedOffset()).isEqualTo(tail);
+        reopened.append("정상3", null);
+        Assertions.assertThat(reopened.read(0, 10)).extracting(OrderJournalEntry::getUserName)
+                .containsExactly("정상1", "정상2", "정상3");
+    }
+
+    @Test
+    void tornTail() throws IOException {
+        OrderJournal journal = new OrderJournal(dir, SEGMENT_SIZE);
+        long tail = journal.append("정상", null);
+        journal.close();
+
+        //ack 전에 죽어서 길이만 쓰이고 내용은 깨진 레코드
+        try (FileChannel channel = FileChannel.open(dir.resolve("orders-000000000000.journal"), StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.allocate(12).putInt(4).putInt(12345).putInt(999).flip(), tail);
+        }
+
+        OrderJournal reopened = new OrderJournal(dir, SEGMENT_SIZE);
+        Assertions.assertThat(reopened.getSyncedOffset()).isEqualTo(tail);
+        Assertions.assertThat(reopened.read(0, 10)).extracting(OrderJournalEntry::getUserName).containsExactly("정상");
+    }
+
+    @Test
+    void rollAndRelease() throws IOException {
+        OrderJournal journal = new OrderJournal(dir, SEGMENT_SIZE);
+        long last = 0;
+        for (int i = 0; i < 100; i++) {
+            last = journal.append("정상" + i, (long) i);
+        }
+        Assertions.assertThat(last).isGreaterThan(SEGMENT_SIZE * 2);
+        Assertions.assertThat(journal.read(0, 1000)).hasSize(100);
+
+        //적용이 끝난 세그먼트만 지운다
+        journal.release(last);
+        try (Stream<Path> files = Files.list(dir)) {
+            Assertions.assertThat(files.count()).isEqualTo(1);
+        }
+        Assertions.assertThat(journal.read(0, 1000)).hasSizeLessThan(100);
+        Assertions.assertThat(journal.read(last, 1000)).isEmpty();
+    }
+}
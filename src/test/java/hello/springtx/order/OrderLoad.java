@@ -0,0 +1,78 @@
+package hello.springtx.order;
+
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 주문 벤치마크 공통 부하, threads개 쓰레드가 ordersPerThread개씩 주문하고 주문별 응답 시간을 모은다
+ * 주문 이름은 mode_쓰레드_순번
+ */
+class OrderLoad {
+
+    private final long elapsed;
+    private final long[] latencies;
+
+    private OrderLoad(long elapsed, long[] latencies) {
+        this.elapsed = elapsed;
+        this.latencies = latencies;
+    }
+
+    static OrderLoad run(String mode, int threads, int ordersPerThread, OrderCall call) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        long[] latencies = new long[threads * ordersPerThread];
+        Future<?>[] futures = new Future<?>[threads];
+        long start = System.nanoTime();
+        try {
+            for (int t = 0; t < threads; t++) {
+                int thread = t;
+                futures[t] = executor.submit(() -> {
+                    for (int i = 0; i < ordersPerThread; i++) {
+                        Order order = new Order();
+                        order.setUserName(mode + "_" + thread + "_" + i);
+                        long begin = System.nanoTime();
+                        call.order(order);
+                        latencies[thread * ordersPerThread + i] = System.nanoTime() - begin;
+                    }
+                    return null;
+                });
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+        long elapsed = System.nanoTime() - start;
+        Arrays.sort(latencies);
+        return new OrderLoad(elapsed, latencies);
+    }
+
+    int orders() {
+        return latencies.length;
+    }
+
+    long elapsedNanos() {
+        return elapsed;
+    }
+
+    //초당 count, 주문 수를 넘기면 처리량
+    long perSecond(long count) {
+        return count * 1_000_000_000L / elapsed;
+    }
+
+    long p50Micros() {
+        return TimeUnit.NANOSECONDS.toMicros(latencies[latencies.length / 2]);
+    }
+
+    long p99Micros() {
+        return TimeUnit.NANOSECONDS.toMicros(latencies[latencies.length * 99 / 100]);
+    }
+
+    @FunctionalInterface
+    interface OrderCall {
+        void order(Order order) throws Exception;
+    }
+}
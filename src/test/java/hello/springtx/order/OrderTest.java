@@ -20,6 +20,9 @@ class OrderTest {
     @Autowired
     OrderRepository orderRepository;
 
+    @Autowired
+    AccountService accountService;
+
     @Test
     void Order() throws NotEnoughMoneyException {
         //given
@@ -31,7 +34,7 @@ class OrderTest {
 
         //then
         Order findOrder = orderRepository.findById(order.getId()).get();
-        Assertions.assertThat(findOrder.getPayStatus()).isEqualTo("완료");
+        Assertions.assertThat(findOrder.getPayStatus()).isEqualTo(PayStatus.COMPLETED);
     }
 
     @Test
@@ -54,8 +57,10 @@ class OrderTest {
     @Test
     void bizException() {
         //given
+        accountService.open("잔고부족_bizException", 500, 4);
         Order order = new Order();
-        order.setUserName("잔고부족");
+        order.setUserName("잔고부족_bizException");
+        order.setAmount(1000L);
 
         //when
         try {
@@ -68,6 +73,24 @@ class OrderTest {
         //체크드 예외라 커밋되어서, 조회가 되어야함
         Optional<Order> orderOptional = orderRepository.findById(order.getId());
         Assertions.assertThat(orderOptional.isPresent()).isTrue();
-        Assertions.assertThat(orderOptional.get().getPayStatus()).isEqualTo("대기");
+        Assertions.assertThat(orderOptional.get().getPayStatus()).isEqualTo(PayStatus.WAITING);
+        Assertions.assertThat(accountService.getBalance("잔고부족_bizException")).isEqualTo(500);
+    }
+
+    @Test
+    void withdraw() throws NotEnoughMoneyException {
+        //given
+        //stripe 하나에는 250씩이라 여러 stripe에서 나눠서 차감되어야함
+        accountService.open("withdraw", 1000, 4);
+        Order order = new Order();
+        order.setUserName("withdraw");
+        order.setAmount(700L);
+
+        //when
+        orderService.order(order);
+
+        //then
+        Assertions.assertThat(orderRepository.findById(order.getId()).get().getPayStatus()).isEqualTo(PayStatus.COMPLETED);
+        Assertions.assertThat(accountService.getBalance("withdraw")).isEqualTo(300);
     }
 }
\ No newline at end of file
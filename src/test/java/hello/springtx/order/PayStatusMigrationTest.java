@@ -0,0 +1,130 @@
+package hello.springtx.order;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
+import hello.springtx.SpringtxApplication;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.UUID;
+
+@SpringBootTest(properties = "spring.datasource.url=jdbc:h2:mem:${random.uuid}")
+class PayStatusMigrationTest {
+
+    @Autowired
+    PayStatusMigration payStatusMigration;
+
+    @Autowired
+    OrderService orderService;
+
+    @Autowired
+    OrderRepository orderRepository;
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    @Test
+    void code() throws NotEnoughMoneyException {
+        Order order = new Order();
+        order.setUserName("정상");
+        orderService.order(order);
+
+        //DB에는 코드, 엔티티에서는 PayStatus
+        Byte code = jdbcTemplate.queryForObject("select pay_status from orders where id = ?", Byte.class, order.getId());
+        Assertions.assertThat(code).isEqualTo(PayStatus.COMPLETED.getCode());
+        Assertions.assertThat(orderRepository.findById(order.getId()).orElseThrow().getPayStatus()).isEqualTo(PayStatus.COMPLETED);
+        Assertions.assertThat(orderRepository.countByPayStatus(PayStatus.COMPLETED)).isPositive();
+        Assertions.assertThat(jdbcTemplate.queryForList("select index_name from information_schema.indexes " +
+                "where table_name = 'ORDERS'", String.class)).contains("IDX_ORDERS_PAY_STATUS");
+    }
+
+    @Test
+    void migrate() {
+        jdbcTemplate.execute("create table orders_legacy (id bigint primary key, user_name varchar(255), " +
+                "pay_status varchar(255), amount bigint)");
+        jdbcTemplate.execute("create index idx_orders_legacy_old on orders_legacy(pay_status)");
+        jdbcTemplate.update("insert into orders_legacy values (1, '정상', '완료', null), (2, '잔고부족', '대기', 1000), " +
+                "(3, '정상', '완료', null), (5, '정상', null, null), (8, '정상', '완료', null)");
+
+        long migrated = payStatusMigration.migrate("orders_legacy", 2);
+
+        Assertions.assertThat(migrated).isEqualTo(4);
+        List<Byte> codes = jdbcTemplate.queryForList("select pay_status from orders_legacy order by id", Byte.class);
+        Assertions.assertThat(codes).containsExactly((byte) 2, (byte) 1, (byte) 2, null, (byte) 2);
+        Assertions.assertThat(jdbcTemplate.queryForObject("select data_type from information_schema.columns " +
+                "where table_name = 'ORDERS_LEGACY' and column_name = 'PAY_STATUS'", String.class)).isEqualTo("TINYINT");
+        Assertions.assertThat(jdbcTemplate.queryForList("select index_name from information_schema.indexes " +
+                "where table_name = 'ORDERS_LEGACY'", String.class))
+                .contains("IDX_ORDERS_LEGACY_PAY_STATUS")
+                .doesNotContain("IDX_ORDERS_LEGACY_OLD");
+
+        //이미 바뀐 테이블은 건너뛴다
+        Assertions.assertThat(payStatusMigration.migrate("orders_legacy", 2)).isZero();
+    }
+
+    @Test
+    void resumeAfterDrop() {
+        //옛 컬럼을 지우고 이름을 바꾸기 전에 멈춘 테이블
+        jdbcTemplate.execute("create table orders_resume (id bigint primary key, user_name varchar(255), " +
+                "pay_status varchar(255), amount bigint)");
+        jdbcTemplate.update("insert into orders_resume values (1, '정상', '완료', null), (2, '잔고부족', '대기', 1000)");
+        jdbcTemplate.execute("alter table orders_resume add column pay_status_code tinyint");
+        jdbcTemplate.update("update orders_resume set pay_status_code = case pay_status when '대기' then 1 when '완료' then 2 end");
+        jdbcTemplate.execute("alter table orders_resume drop column pay_status");
+
+        payStatusMigration.migrate("orders_resume", 2);
+
+        Assertions.assertThat(jdbcTemplate.queryForList("select pay_status from orders_resume order by id", Byte.class))
+                .containsExactly((byte) 2, (byte) 1);
+        Assertions.assertThat(jdbcTemplate.queryForList("select column_name from information_schema.columns " +
+                "where table_name = 'ORDERS_RESUME'", String.class)).doesNotContain("PAY_STATUS_CODE");
+        Assertions.assertThat(jdbcTemplate.queryForList("select index_name from information_schema.indexes " +
+                "where table_name = 'ORDERS_RESUME'", String.class)).contains("IDX_ORDERS_RESUME_PAY_STATUS");
+    }
+
+    @Test
+    void invalidTableName() {
+        Assertions.assertThatThrownBy(() -> payStatusMigration.migrate("orders; drop table orders", 2))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void migrateOnStartup() throws SQLException {
+        //문자열 pay_status가 남아 있는 기존 DB, hibernate는 스키마를 지우지 않고 그대로 쓴다
+        String url = "jdbc:h2:mem:pay-status-startup-" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1";
+        try (Connection connection = DriverManager.getConnection(url, "sa", "");
+             Statement statement = connection.createStatement()) {
+            statement.execute("create table orders (id bigint primary key, user_name varchar(255), " +
+                    "pay_status varchar(255), amount bigint)");
+            statement.execute("insert into orders values (1, '정상', '완료', null), (2, '잔고부족', '대기', 1000)");
+
+            try (ConfigurableApplicationContext context = new SpringApplicationBuilder(SpringtxApplication.class)
+                    .properties("spring.datasource.url=" + url,
+                            "spring.jpa.hibernate.ddl-auto=update",
+                            "log.archive.dir=${java.io.tmpdir}/springtx-log-archive-" + UUID.randomUUID())
+                    .run()) {
+                //EntityManagerFactory보다 먼저 변환한다
+                Assertions.assertThat(context.getBeanFactory().getBeanDefinition("entityManagerFactory").getDependsOn())
+                        .contains("payStatusMigration");
+
+                OrderRepository orders = context.getBean(OrderRepository.class);
+                Assertions.assertThat(orders.findById(1L).orElseThrow().getPayStatus()).isEqualTo(PayStatus.COMPLETED);
+                Assertions.assertThat(orders.findById(2L).orElseThrow().getPayStatus()).isEqualTo(PayStatus.WAITING);
+                Assertions.assertThat(context.getBean(JdbcTemplate.class).queryForObject(
+                        "select data_type from information_schema.columns " +
+                                "where table_name = 'ORDERS' and column_name = 'PAY_STATUS'", String.class))
+                        .isEqualTo("TINYINT");
+            } finally {
+                statement.execute("shutdown");
+            }
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package hello.springtx.order;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 결제 상태를 문자열(varchar)로 저장할 때와 코드(tinyint)로 저장할 때
+ * 행 크기, 인덱스 크기(H2 DISK_SPACE_USED), 상태 조건 조회 지연시간 비교
+ */
+@Slf4j
+@Tag("benchmark")
+@ActiveProfiles("benchmark")
+@SpringBootTest(properties = {
+        "logging.level.hello.springtx=INFO"
+})
+class PayStatusStorageBenchmarkTest {
+
+    static final int ROWS = 1_000_000;
+    static final int QUERIES = 200;
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    PayStatusMigration payStatusMigration;
+
+    @Test
+    void storage() {
+        //대기 10%, 완료 90%
+        jdbcTemplate.execute("create table orders_storage (id bigint primary key, user_name varchar(255), " +
+                "pay_status varchar(255), amount bigint)");
+        jdbcTemplate.update("insert into orders_storage select x, 'user' || mod(x, 1000), " +
+                "case when mod(x, 10) = 0 then '대기' else '완료' end, null from system_range(1, ?)", ROWS);
+        jdbcTemplate.execute("create index idx_orders_storage_varchar on orders_storage(pay_status)");
+        measure("varchar", "idx_orders_storage_varchar", "'대기'");
+
+        long start = System.nanoTime();
+        payStatusMigration.migrate("orders_storage", 100_000);
+        log.info("migration rows={} {}ms", ROWS, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        measure("tinyint", "idx_orders_storage_pay_status", String.valueOf(PayStatus.WAITING.getCode()));
+    }
+
+    private void measure(String mode, String index, String waiting) {
+        long withIndex = diskSpaceUsed();
+        jdbcTemplate.execute("drop index " + index);
+        long withoutIndex = diskSpaceUsed();
+        jdbcTemplate.execute("create index " + index + " on orders_storage(pay_status)");
+
+        String query = "select count(*) from orders_storage where pay_status = " + waiting;
+        for (int i = 0; i < QUERIES / 10; i++) {
+            jdbcTemplate.queryForObject(query, Long.class);
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < QUERIES; i++) {
+            jdbcTemplate.queryForObject(query, Long.class);
+        }
+        long elapsed = System.nanoTime() - start;
+
+        log.info("mode={} rows={} table={}KB row={}B index={}KB statusQuery avg={}us", mode, ROWS,
+                withoutIndex / 1024, withoutIndex / ROWS, (withIndex - withoutIndex) / 1024,
+                TimeUnit.NANOSECONDS.toMicros(elapsed / QUERIES));
+    }
+
+    private long diskSpaceUsed() {
+        return jdbcTemplate.queryForObject("select disk_space_used('ORDERS_STORAGE')", Long.class);
+    }
+}
@@ -0,0 +1,109 @@
+package hello.springtx.propagation;
+
+import hello.springtx.propagation.LogArchive.ArchiveResult;
+import lombok.extern.slf4j.Slf4j;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import javax.persistence.EntityManager;
+import java.time.Duration;
+import java.util.List;
+
+@Slf4j
+@SpringBootTest(properties = {
+        "log.archive.dir=${java.io.tmpdir}/springtx-log-archive-${random.uuid}",
+        "log.archive.batch-size=300"
+})
+class LogArchiverTest {
+
+    @Autowired
+    MemberService memberService;
+
+    @Autowired
+    LogRepository logRepository;
+
+    @Autowired
+    LogArchiver logArchiver;
+
+    @Autowired
+    LogArchive logArchive;
+
+    @Autowired
+    EntityManager em;
+
+    @Test
+    void archive() {
+        //given
+        int count = 1000;
+        for (int i = 0; i < count; i++) {
+            memberService.joinV2("archive_회원가입_" + i);
+        }
+
+        //when
+        ArchiveResult result = logArchiver.archive(Duration.ZERO);
+
+        //then
+        Assertions.assertThat(result.getCount()).isGreaterThanOrEqualTo(count);
+        Assertions.assertThat(result.getArchivedBytes()).isLessThan(result.getRawBytes());
+        log.info("storage rawBytes={} archivedBytes={} ratio={}",
+                result.getRawBytes(), result.getArchivedBytes(),
+                String.format("%.2f", (double) result.getArchivedBytes() / result.getRawBytes()));
+
+        //핫 테이블에는 없고 아카이브에서 조회 되어야함
+        Long hot = em.createQuery("select count(l) from Log l where l.message like 'archive_%'", Long.class)
+                .getSingleResult();
+        Assertions.assertThat(hot).isZero();
+
+        long start = System.nanoTime();
+        for (int i = 0; i < count; i++) {
+            String message = "archive_회원가입_" + i;
+            Assertions.assertThat(logRepository.find(message)).map(Log::getMessage).hasValue(message);
+        }
+        long elapsed = System.nanoTime() - start;
+        log.info("archived lookup avg={}us", elapsed / count / 1000);
+
+        Assertions.assertThat(logRepository.findContaining("회원가입_99")).hasSize(11);
+    }
+
+    @Test
+    void archiveAfterFailedDelete() {
+        //given
+        for (int i = 0; i < 10; i++) {
+            memberService.joinV2("archiveRetry_" + i);
+        }
+        //세그먼트는 썼지만 delete 커밋 전에 죽은 상황
+        List<Log> written = em.createQuery("select l from Log l where l.message like 'archiveRetry_%' order by l.id", Log.class)
+                .getResultList();
+        logArchive.append(written);
+
+        //when
+        logArchiver.archive(Duration.ZERO);
+
+        //then
+        Assertions.assertThat(logArchive.stream().filter(l -> l.getMessage().startsWith("archiveRetry_")))
+                .hasSize(10);
+        Long hot = em.createQuery("select count(l) from Log l where l.message like 'archiveRetry_%'", Long.class)
+                .getSingleResult();
+        Assertions.assertThat(hot).isZero();
+        Assertions.assertThat(logRepository.findContaining("archiveRetry_3")).hasSize(1);
+    }
+
+    @Test
+    void nullCreatedAt() {
+        //given, createdAt 없이 저장된 로그
+        long id = Math.max(logArchive.maxId(), 0) + 1_000_000;
+        Log log = new Log("nullCreatedAt");
+        log.setId(id);
+
+        //when
+        logArchive.append(List.of(log));
+
+        //then 1970년이 아니라 null로 돌아와야 한다
+        Assertions.assertThat(logArchive.findById(id)).hasValueSatisfying(found -> {
+            Assertions.assertThat(found.getMessage()).isEqualTo("nullCreatedAt");
+            Assertions.assertThat(found.getCreatedAt()).isNull();
+        });
+    }
+}
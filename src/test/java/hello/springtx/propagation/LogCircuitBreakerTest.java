@@ -0,0 +1,139 @@
+package hello.springtx.propagation;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.transaction.CannotCreateTransactionException;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.*;
+
+class LogCircuitBreakerTest {
+
+    LogRepository logRepository = mock(LogRepository.class);
+
+    AtomicLong now = new AtomicLong();
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void openAndRecover() {
+        //given
+        doThrow(new DataAccessResourceFailureException("커넥션 실패"))
+                .when(logRepository).save(argThat(l -> l.getMessage().contains("DB장애")));
+        Path spillFile = tempDir.resolve("log.spill");
+        LogCircuitBreaker breaker = new LogCircuitBreaker(logRepository, 10, 4, 50, 1000, 2, spillFile, now::get, Runnable::run);
+
+        //when
+        //4번 중 2번 실패 -> 실패율 50%
+        breaker.save(new Log("정상1"));
+        Assertions.assertThatThrownBy(() -> breaker.save(new Log("DB장애1"))).isInstanceOf(DataAccessException.class);
+        breaker.save(new Log("정상2"));
+        Assertions.assertThatThrownBy(() -> breaker.save(new Log("DB장애2"))).isInstanceOf(DataAccessException.class);
+
+        //then
+        Assertions.assertThat(breaker.getState()).isEqualTo(LogCircuitBreaker.State.OPEN);
+
+        //열려 있으면 LogRepository를 호출하지 않고 거절, 파일에 남긴다
+        Assertions.assertThatThrownBy(() -> breaker.save(new Log("거절")))
+                .isInstanceOf(LogCircuitOpenException.class);
+        verify(logRepository, never()).save(argThat(l -> l.getMessage().equals("거절")));
+        Assertions.assertThat(breaker.getRejected()).isEqualTo(1);
+        Assertions.assertThat(Files.exists(spillFile)).isTrue();
+
+        //시간이 지나면 HALF_OPEN, 시험 호출 2번 성공하면 CLOSED
+        now.addAndGet(TimeUnit.MILLISECONDS.toNanos(1000));
+        breaker.save(new Log("시험1"));
+        Assertions.assertThat(breaker.getState()).isEqualTo(LogCircuitBreaker.State.HALF_OPEN);
+        breaker.save(new Log("시험2"));
+        Assertions.assertThat(breaker.getState()).isEqualTo(LogCircuitBreaker.State.CLOSED);
+
+        //CLOSED가 되면 파일에 남긴 로그를 다시 저장(테스트는 replayExecutor가 바로 실행)
+        verify(logRepository).save(argThat(l -> l.getMessage().equals("거절")));
+        Assertions.assertThat(Files.exists(spillFile)).isFalse();
+        Assertions.assertThat(breaker.replaySpilled()).isZero();
+    }
+
+    @Test
+    void replayFailureRespilled() throws Exception {
+        //given
+        doThrow(new DataAccessResourceFailureException("커넥션 실패"))
+                .when(logRepository).save(argThat(l -> l.getMessage().contains("DB장애")));
+        doThrow(new RuntimeException("예외 발생"))
+                .when(logRepository).save(argThat(l -> l.getMessage().contains("로그예외")));
+        Path spillFile = tempDir.resolve("log.spill");
+        //자동 재저장은 하지 않고 replaySpilled를 직접 호출한다
+        LogCircuitBreaker breaker = new LogCircuitBreaker(logRepository, 10, 4, 50, 1000, 2, spillFile, now::get, r -> {
+        });
+        breaker.save(new Log("정상1"));
+        breaker.save(new Log("정상2"));
+        Assertions.assertThatThrownBy(() -> breaker.save(new Log("DB장애1"))).isInstanceOf(DataAccessException.class);
+        Assertions.assertThatThrownBy(() -> breaker.save(new Log("DB장애2"))).isInstanceOf(DataAccessException.class);
+        for (String message : List.of("DB장애_거절", "로그예외_거절", "정상_거절")) {
+            Assertions.assertThatThrownBy(() -> breaker.save(new Log(message))).isInstanceOf(LogCircuitOpenException.class);
+        }
+        now.addAndGet(TimeUnit.MILLISECONDS.toNanos(1000));
+        breaker.save(new Log("시험1"));
+        breaker.save(new Log("시험2"));
+        Assertions.assertThat(breaker.getState()).isEqualTo(LogCircuitBreaker.State.CLOSED);
+
+        //when
+        int replayed = breaker.replaySpilled();
+
+        //then
+        //인프라 장애로 실패한 로그는 파일에 다시 남고, 업무 예외는 버린다
+        Assertions.assertThat(replayed).isEqualTo(1);
+        Assertions.assertThat(Files.readAllLines(spillFile, StandardCharsets.UTF_8))
+                .extracting(line -> new String(Base64.getDecoder().decode(line), StandardCharsets.UTF_8))
+                .containsExactly("DB장애_거절");
+    }
+
+    @Test
+    void halfOpenFail() {
+        //given
+        doThrow(new CannotCreateTransactionException("커넥션 획득 실패")).when(logRepository).save(any());
+        LogCircuitBreaker breaker = new LogCircuitBreaker(logRepository, 10, 2, 50, 1000, 2, null, now::get, Runnable::run);
+        for (int i = 0; i < 2; i++) {
+            Assertions.assertThatThrownBy(() -> breaker.save(new Log("DB장애"))).isInstanceOf(RuntimeException.class);
+        }
+
+        //when
+        now.addAndGet(TimeUnit.MILLISECONDS.toNanos(1000));
+        Assertions.assertThatThrownBy(() -> breaker.save(new Log("DB장애")))
+                .isNotInstanceOf(LogCircuitOpenException.class);
+
+        //then
+        Assertions.assertThat(breaker.getState()).isEqualTo(LogCircuitBreaker.State.OPEN);
+        verify(logRepository, times(3)).save(any());
+    }
+
+    @Test
+    void businessExceptionIsNotFailure() {
+        //given
+        doThrow(new RuntimeException("예외 발생"))
+                .when(logRepository).save(argThat(l -> l.getMessage().contains("로그예외")));
+        LogCircuitBreaker breaker = new LogCircuitBreaker(logRepository, 10, 2, 50, 1000, 2, null, now::get, Runnable::run);
+
+        //when
+        for (int i = 0; i < 5; i++) {
+            Assertions.assertThatThrownBy(() -> breaker.save(new Log("로그예외"))).isInstanceOf(RuntimeException.class);
+        }
+
+        //then
+        Assertions.assertThat(breaker.getState()).isEqualTo(LogCircuitBreaker.State.CLOSED);
+        Assertions.assertThat(LogCircuitBreaker.isInfrastructureFailure(
+                new RuntimeException(new SQLException("connection reset")))).isTrue();
+    }
+}
@@ -0,0 +1,89 @@
+package hello.springtx.propagation;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+@SpringBootTest
+class LogRepositoryTest {
+
+    @Autowired
+    MemberService memberService;
+
+    @Autowired
+    LogRepository logRepository;
+
+    @Test
+    void findContaining() {
+        //given
+        memberService.joinV2("findContaining_사과나무");
+        memberService.joinV2("findContaining_배나무");
+        memberService.joinV2("로그예외_findContaining_감나무");
+
+        //when
+        List<String> messages = logRepository.findContaining("나무").stream()
+                .map(Log::getMessage)
+                .collect(Collectors.toList());
+
+        //then
+        //롤백된 로그예외 메시지는 색인되지 않아야함
+        Assertions.assertThat(messages)
+                .contains("findContaining_사과나무", "findContaining_배나무")
+                .doesNotContain("로그예외_findContaining_감나무");
+        Assertions.assertThat(logRepository.findContaining("findContaining_사과")).hasSize(1);
+        Assertions.assertThat(logRepository.findContaining("findContaining_없음")).isEmpty();
+        Assertions.assertThat(logRepository.findContaining(null)).isEmpty();
+    }
+
+    @Test
+    void rebuildIndex() {
+        //given
+        memberService.joinV2("rebuildIndex_success");
+
+        //when
+        logRepository.rebuildIndex();
+
+        //then
+        Assertions.assertThat(logRepository.findContaining("rebuildIndex_succ")).hasSize(1);
+    }
+
+    @Test
+    void grams() {
+        LogMessageIndex index = new LogMessageIndex();
+        Log log1 = new Log("abcabc");
+        log1.setId(1L);
+        Log log2 = new Log("xbcab");
+        log2.setId(2L);
+        index.add(log1);
+        index.add(log2);
+
+        Assertions.assertThat(LogMessageIndex.grams("abcabc")).hasSize(3);
+        Assertions.assertThat(index.search("bcab")).containsExactly(1L, 2L);
+        Assertions.assertThat(index.search("cabc")).containsExactly(1L);
+        //3글자 미만은 색인으로 찾지 않는다
+        Assertions.assertThat(index.search("bc")).isEmpty();
+        Assertions.assertThat(index.search(null)).isEmpty();
+    }
+
+    @Test
+    void rebuildSkipsDuplicates() {
+        LogMessageIndex index = new LogMessageIndex();
+        Log log1 = new Log("abcabc");
+        log1.setId(1L);
+        Log log2 = new Log("xbcab");
+        log2.setId(2L);
+
+        //rebuild 중에 커밋되어 스트림에도 들어가고 afterCommit으로도 들어온 로그
+        index.rebuild(Stream.of(log2, log1));
+        index.add(log1);
+        index.add(log2);
+
+        Assertions.assertThat(index.size()).isEqualTo(2);
+        Assertions.assertThat(index.search("bcab")).containsExactly(1L, 2L);
+    }
+}
@@ -0,0 +1,46 @@
+package hello.springtx.propagation;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 샤드 수에 따른 Member 쓰기 처리량
+ */
+@Slf4j
+@Tag("benchmark")
+class ShardWriteBenchmarkTest {
+
+    static final int THREADS = 32;
+    static final int MEMBERS = 50_000;
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 2, 4, 8})
+    void write(int shardCount) throws Exception {
+        MemberShards shards = new MemberShards(shardCount, "jdbc:h2:mem:" + UUID.randomUUID() + "-%d;DB_CLOSE_DELAY=-1", 8);
+        ShardedMemberRepository repository = new ShardedMemberRepository(shards);
+        try {
+            ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+            long start = System.nanoTime();
+            for (int i = 0; i < MEMBERS; i++) {
+                Member member = new Member("bench_" + i);
+                executor.execute(() -> repository.save(member));
+            }
+            executor.shutdown();
+            executor.awaitTermination(10, TimeUnit.MINUTES);
+            long elapsed = System.nanoTime() - start;
+
+            log.warn("shards={} members={} elapsed={}ms throughput={}/s count={}",
+                    shardCount, MEMBERS, TimeUnit.NANOSECONDS.toMillis(elapsed),
+                    MEMBERS * 1_000_000_000L / elapsed, repository.count());
+        } finally {
+            shards.close();
+        }
+    }
+}
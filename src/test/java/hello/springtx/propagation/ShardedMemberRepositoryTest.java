@@ -0,0 +1,82 @@
+package hello.springtx.propagation;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.util.stream.Collectors;
+
+@SpringBootTest(properties = {
+        "member.sharding.enabled=true",
+        "member.sharding.shards=4",
+        "member.sharding.url=jdbc:h2:mem:${random.uuid}-%d;DB_CLOSE_DELAY=-1"
+})
+class ShardedMemberRepositoryTest {
+
+    @Autowired
+    MemberService memberService;
+
+    @Autowired
+    MemberRepository memberRepository;
+
+    @Autowired
+    LogRepository logRepository;
+
+    @Autowired
+    MemberShards shards;
+
+    @Test
+    void routing() {
+        //given
+        for (int i = 0; i < 100; i++) {
+            memberRepository.save(new Member("routing_" + i));
+        }
+
+        //when
+        Member member = memberRepository.find("routing_7").get();
+
+        //then
+        //id 하위 비트가 샤드 번호
+        int shard = MemberShards.shardIndex("routing_7", shards.size());
+        Assertions.assertThat(member.getId() & ((1 << ShardedMemberRepository.SHARD_BITS) - 1)).isEqualTo(shard);
+
+        //여러 샤드에 고르게 나뉘고, 병렬 조회로 모두 모여야함
+        Assertions.assertThat(memberRepository.findByUsernameStartingWith("routing_"))
+                .hasSize(100)
+                .extracting(Member::getId)
+                .doesNotHaveDuplicates();
+        Assertions.assertThat(memberRepository.findByUsernameStartingWith("routing_").stream()
+                .map(m -> m.getId() & ((1 << ShardedMemberRepository.SHARD_BITS) - 1))
+                .collect(Collectors.toSet())).hasSize(4);
+    }
+
+    /**
+     * 샤드 트랜잭션도 바깥 트랜잭션과 같이 롤백되어야함
+     */
+    @Test
+    void outerTxOn_fail() {
+        //given
+        String username = "로그예외_sharded_outerTxOn_fail";
+
+        //when
+        Assertions.assertThatThrownBy(() -> memberService.joinV1(username)).isInstanceOf(RuntimeException.class);
+
+        //then
+        Assertions.assertThat(memberRepository.find(username)).isEmpty();
+        Assertions.assertThat(logRepository.find(username)).isEmpty();
+    }
+
+    @Test
+    void recoverException_success() {
+        //given
+        String username = "로그예외_sharded_recoverException_success";
+
+        //when
+        memberService.joinV2(username);
+
+        //then
+        Assertions.assertThat(memberRepository.find(username)).isPresent();
+        Assertions.assertThat(logRepository.find(username)).isEmpty();
+    }
+}
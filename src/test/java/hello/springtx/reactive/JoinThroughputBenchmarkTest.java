@@ -0,0 +1,99 @@
+package hello.springtx.reactive;
+
+import hello.springtx.propagation.MemberService;
+import lombok.extern.slf4j.Slf4j;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import reactor.core.publisher.Flux;
+
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 동시 가입 JOINS건, blocking JPA(쓰레드 풀) vs reactive(r2dbc) 처리량과 쓰레드당 처리량 비교
+ * joinV2는 바깥 트랜잭션 커넥션을 잡은 채로 로그를 REQUIRES_NEW로 저장해서 커넥션을 하나 더 잡는다
+ * 동시 호출이 풀 크기를 넘으면 모두 첫 커넥션만 잡고 두번째를 기다리다 교착되므로 동시 호출을 풀의 절반으로 제한한다
+ */
+@Slf4j
+@Tag("benchmark")
+@ActiveProfiles("benchmark")
+@SpringBootTest(properties = {
+        "admission.enabled=false",
+        "spring.datasource.hikari.maximum-pool-size=" + JoinThroughputBenchmarkTest.POOL_SIZE,
+        "reactive.r2dbc.pool-size=" + JoinThroughputBenchmarkTest.POOL_SIZE
+})
+class JoinThroughputBenchmarkTest {
+
+    static final int JOINS = 20_000;
+    static final int POOL_SIZE = 20;
+    static final int CONCURRENCY = POOL_SIZE / 2;
+
+    @Autowired
+    MemberService memberService;
+
+    @Autowired
+    ReactiveMemberService reactiveMemberService;
+
+    @Test
+    void blocking() throws Exception {
+        //blocking은 동시 요청 수만큼 쓰레드가 필요하다
+        ExecutorService executor = Executors.newFixedThreadPool(CONCURRENCY);
+        Set<Thread> threads = ConcurrentHashMap.newKeySet();
+        LongAdder joined = new LongAdder();
+        Queue<Throwable> errors = new ConcurrentLinkedQueue<>();
+        long start = System.nanoTime();
+        for (int i = 0; i < JOINS; i++) {
+            String username = "blocking_" + i;
+            executor.execute(() -> {
+                threads.add(Thread.currentThread());
+                try {
+                    memberService.joinV2(username);
+                    joined.increment();
+                } catch (Throwable e) {
+                    errors.add(e);
+                }
+            });
+        }
+        executor.shutdown();
+        Assertions.assertThat(executor.awaitTermination(10, TimeUnit.MINUTES)).isTrue();
+        long elapsed = System.nanoTime() - start;
+
+        Assertions.assertThat(errors).isEmpty();
+        report("blocking", elapsed, joined.sum(), threads.size());
+    }
+
+    @Test
+    void reactive() {
+        Set<Thread> threads = ConcurrentHashMap.newKeySet();
+        LongAdder joined = new LongAdder();
+        long start = System.nanoTime();
+        //실패하면 blockLast가 예외를 던져서 벤치마크가 실패한다
+        Flux.range(0, JOINS)
+                .flatMap(i -> reactiveMemberService.joinV2("reactive_" + i)
+                        .doOnSuccess(v -> {
+                            threads.add(Thread.currentThread());
+                            joined.increment();
+                        }), CONCURRENCY)
+                .blockLast();
+        report("reactive", System.nanoTime() - start, joined.sum(), threads.size());
+    }
+
+    //성공한 가입만 처리량에 넣는다
+    private void report(String mode, long elapsedNanos, long joined, int threads) {
+        Assertions.assertThat(joined).isEqualTo(JOINS);
+        long throughput = joined * 1_000_000_000L / elapsedNanos;
+        log.warn("mode={} joins={} concurrency={} threads={} elapsed={}ms throughput={}/s perThread={}/s",
+                mode, joined, CONCURRENCY, threads, TimeUnit.NANOSECONDS.toMillis(elapsedNanos),
+                throughput, throughput / Math.max(1, threads));
+    }
+}
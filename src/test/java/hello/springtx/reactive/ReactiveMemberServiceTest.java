@@ -0,0 +1,67 @@
+package hello.springtx.reactive;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import reactor.test.StepVerifier;
+
+/**
+ * MemberServiceTest의 joinV1/joinV2 결과가 reactive에서도 같아야 한다
+ */
+@SpringBootTest
+class ReactiveMemberServiceTest {
+
+    @Autowired
+    ReactiveMemberService memberService;
+
+    @Autowired
+    ReactiveMemberRepository memberRepository;
+
+    @Autowired
+    ReactiveLogRepository logRepository;
+
+    @Test
+    void outerTxOn_success() {
+        //given
+        String username = "reactive_outerTxOn_success";
+
+        //when
+        StepVerifier.create(memberService.joinV1(username)).verifyComplete();
+
+        //then
+        StepVerifier.create(memberRepository.find(username)).expectNextCount(1).verifyComplete();
+        StepVerifier.create(logRepository.find(username)).expectNextCount(1).verifyComplete();
+    }
+
+    /**
+     * 로그 예외가 전파되어 회원도 롤백
+     */
+    @Test
+    void outerTxOn_fail() {
+        //given
+        String username = "로그예외_reactive_outerTxOn_fail";
+
+        //when
+        StepVerifier.create(memberService.joinV1(username)).verifyError(RuntimeException.class);
+
+        //then
+        StepVerifier.create(memberRepository.find(username)).verifyComplete();
+        StepVerifier.create(logRepository.find(username)).verifyComplete();
+    }
+
+    /**
+     * 로그는 REQUIRES_NEW로 따로 롤백되고, 예외를 복구했으니 회원은 커밋
+     */
+    @Test
+    void recoverException_success() {
+        //given
+        String username = "로그예외_reactive_recoverException_success";
+
+        //when
+        StepVerifier.create(memberService.joinV2(username)).verifyComplete();
+
+        //then
+        StepVerifier.create(memberRepository.find(username)).expectNextCount(1).verifyComplete();
+        StepVerifier.create(logRepository.find(username)).verifyComplete();
+    }
+}
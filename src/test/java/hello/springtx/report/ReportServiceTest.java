@@ -0,0 +1,93 @@
+package hello.springtx.report;
+
+import hello.springtx.order.Order;
+import hello.springtx.order.OrderRepository;
+import hello.springtx.order.PayStatus;
+import hello.springtx.propagation.LogArchiver;
+import hello.springtx.propagation.MemberService;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.stream.Collectors;
+
+//범위가 여러 조각으로 나뉘도록 chunk-size를 작게
+@SpringBootTest(properties = {
+        "report.chunk-size=3",
+        "log.archive.dir=${java.io.tmpdir}/springtx-report-archive-${random.uuid}"
+})
+class ReportServiceTest {
+
+    @Autowired
+    ReportService reportService;
+
+    @Autowired
+    OrderRepository orderRepository;
+
+    @Autowired
+    MemberService memberService;
+
+    @Autowired
+    LogArchiver logArchiver;
+
+    @Test
+    void countOrdersByUserAndStatus() {
+        //given
+        save("report_a", PayStatus.COMPLETED, 5);
+        save("report_a", PayStatus.WAITING, 2);
+        save("report_b", PayStatus.COMPLETED, 3);
+
+        //when
+        List<String> counts = reportService.countOrdersByUserAndStatus().stream()
+                .filter(c -> c.getUserName() != null && c.getUserName().startsWith("report_"))
+                .map(c -> c.getUserName() + ":" + c.getPayStatus() + ":" + c.getCount())
+                .collect(Collectors.toList());
+
+        //then
+        Assertions.assertThat(counts).containsExactly("report_a:대기:2", "report_a:완료:5", "report_b:완료:3");
+    }
+
+    @Test
+    void findMembersWithoutLog() {
+        //given
+        memberService.joinV2("report_정상");
+        memberService.joinV2("로그예외_report_실패");
+
+        //when
+        List<String> usernames = reportService.findMembersWithoutLog().stream()
+                .map(MemberSummary::getUsername)
+                .collect(Collectors.toList());
+
+        //then
+        Assertions.assertThat(usernames).contains("로그예외_report_실패").doesNotContain("report_정상");
+    }
+
+    @Test
+    void findMembersWithoutLogArchived() {
+        //given
+        //로그가 아카이브로 옮겨지면 핫 테이블에는 없다
+        memberService.joinV2("report_아카이브");
+        memberService.joinV2("로그예외_report_아카이브");
+        logArchiver.archive(Duration.ZERO);
+
+        //when
+        List<String> usernames = reportService.findMembersWithoutLog().stream()
+                .map(MemberSummary::getUsername)
+                .collect(Collectors.toList());
+
+        //then
+        Assertions.assertThat(usernames).contains("로그예외_report_아카이브").doesNotContain("report_아카이브");
+    }
+
+    private void save(String userName, PayStatus payStatus, int count) {
+        for (int i = 0; i < count; i++) {
+            Order order = new Order();
+            order.setUserName(userName);
+            order.setPayStatus(payStatus);
+            orderRepository.save(order);
+        }
+    }
+}
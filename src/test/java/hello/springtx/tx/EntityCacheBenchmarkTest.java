@@ -0,0 +1,87 @@
+package hello.springtx.tx;
+
+import hello.springtx.order.Order;
+import hello.springtx.order.PayStatus;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.CacheRetrieveMode;
+import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 읽기 위주 부하, Order 단건 조회를 2차 캐시 사용 vs DB 직접 조회(CacheRetrieveMode.BYPASS)로 비교
+ */
+@Slf4j
+@Tag("benchmark")
+@ActiveProfiles("benchmark")
+@SpringBootTest(properties = {
+        "logging.level.hello.springtx=INFO",
+        "tx.deadline.default-ms=0"
+})
+class EntityCacheBenchmarkTest {
+
+    static final int ORDERS = 1_000;
+    static final int WARMUP = 20_000;
+    static final int READS = 200_000;
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    PlatformTransactionManager txManager;
+
+    @Autowired
+    EntityCacheStatistics entityCacheStatistics;
+
+    @Test
+    void readHeavy() {
+        List<Long> ids = new ArrayList<>();
+        new TransactionTemplate(txManager).executeWithoutResult(status -> {
+            for (int i = 0; i < ORDERS; i++) {
+                Order order = new Order();
+                order.setUserName("정상");
+                order.setPayStatus(PayStatus.COMPLETED);
+                em.persist(order);
+                ids.add(order.getId());
+            }
+        });
+
+        TransactionTemplate readOnly = new TransactionTemplate(txManager);
+        readOnly.setReadOnly(true);
+
+        measure("database", readOnly, ids, Map.of("javax.persistence.cache.retrieveMode", CacheRetrieveMode.BYPASS));
+        measure("cache", readOnly, ids, Map.of());
+        entityCacheStatistics.log();
+    }
+
+    private void measure(String mode, TransactionTemplate readOnly, List<Long> ids, Map<String, Object> hints) {
+        for (int i = 0; i < WARMUP; i++) {
+            read(readOnly, ids, hints);
+        }
+
+        long start = System.nanoTime();
+        for (int i = 0; i < READS; i++) {
+            read(readOnly, ids, hints);
+        }
+        long elapsed = System.nanoTime() - start;
+
+        log.info("mode={} reads={} avg={}ns total={}ms", mode, READS, elapsed / READS,
+                TimeUnit.NANOSECONDS.toMillis(elapsed));
+    }
+
+    private void read(TransactionTemplate readOnly, List<Long> ids, Map<String, Object> hints) {
+        Long id = ids.get(ThreadLocalRandom.current().nextInt(ids.size()));
+        readOnly.executeWithoutResult(status -> em.find(Order.class, id, hints));
+    }
+}
@@ -0,0 +1,126 @@
+package hello.springtx.tx;
+
+import com.github.benmanes.caffeine.jcache.configuration.CaffeineConfiguration;
+import hello.springtx.order.NotEnoughMoneyException;
+import hello.springtx.order.Order;
+import hello.springtx.order.OrderRepository;
+import hello.springtx.order.OrderService;
+import hello.springtx.order.PayStatus;
+import hello.springtx.propagation.Member;
+import hello.springtx.propagation.MemberRepository;
+import hello.springtx.propagation.MemberService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.cache.CacheManager;
+import javax.persistence.EntityManager;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:${random.uuid}",
+        "jpa.second-level-cache.max-entries=10"
+})
+class EntityCacheTest {
+
+    static final String ORDER_REGION = Order.class.getName();
+    static final String MEMBER_REGION = Member.class.getName();
+
+    @Autowired
+    EntityCacheStatistics entityCacheStatistics;
+
+    @Autowired
+    OrderService orderService;
+
+    @Autowired
+    OrderRepository orderRepository;
+
+    @Autowired
+    MemberService memberService;
+
+    @Autowired
+    MemberRepository memberRepository;
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    PlatformTransactionManager txManager;
+
+    @Autowired
+    CacheManager entityCacheManager;
+
+    @Test
+    void orderHit() throws NotEnoughMoneyException {
+        Order order = order("정상");
+        long hit = entityCacheStatistics.getHitCount(ORDER_REGION);
+
+        //트랜잭션이 달라도 2차 캐시에서 읽는다
+        orderRepository.findById(order.getId());
+        orderRepository.findById(order.getId());
+
+        assertThat(entityCacheStatistics.getHitCount(ORDER_REGION)).isGreaterThanOrEqualTo(hit + 2);
+    }
+
+    @Test
+    void memberHit() {
+        memberService.joinV2("entityCache_memberHit");
+        long hit = entityCacheStatistics.getHitCount(MEMBER_REGION);
+
+        //첫 조회가 쿼리 캐시를 채우고, 이후 조회는 쿼리 캐시의 id로 엔티티를 2차 캐시에서 읽는다
+        for (int i = 0; i < 3; i++) {
+            assertThat(memberRepository.find("entityCache_memberHit")).isPresent();
+        }
+
+        assertThat(entityCacheStatistics.getHitCount(MEMBER_REGION)).isGreaterThan(hit);
+    }
+
+    @Test
+    void updateVisible() throws NotEnoughMoneyException {
+        Order order = order("정상");
+        orderRepository.findById(order.getId());
+
+        new TransactionTemplate(txManager).executeWithoutResult(status ->
+                em.find(Order.class, order.getId()).setPayStatus(PayStatus.WAITING));
+
+        //READ_WRITE, 커밋된 변경이 캐시에 반영된다
+        assertThat(orderRepository.findById(order.getId()).orElseThrow().getPayStatus()).isEqualTo(PayStatus.WAITING);
+    }
+
+    @Test
+    void eviction() throws NotEnoughMoneyException {
+        long eviction = entityCacheStatistics.getEvictionCount(ORDER_REGION);
+
+        //최대 10개를 넘기면 밀려난다
+        for (int i = 0; i < 30; i++) {
+            orderRepository.findById(order("정상").getId());
+        }
+
+        entityCacheStatistics.log();
+        assertThat(entityCacheStatistics.getEvictionCount(ORDER_REGION)).isGreaterThan(eviction);
+    }
+
+    @Test
+    void updateTimestampsUnbounded() {
+        //쿼리 캐시 무효화 기준이라 크기 eviction/만료가 없어야함
+        CaffeineConfiguration<?, ?> timestamps = entityCacheManager
+                .getCache(EntityCacheConfig.UPDATE_TIMESTAMPS_REGION)
+                .getConfiguration(CaffeineConfiguration.class);
+        assertThat(timestamps.getMaximumSize()).isEmpty();
+        assertThat(timestamps.getExpireAfterWrite()).isEmpty();
+
+        CaffeineConfiguration<?, ?> orders = entityCacheManager.getCache(ORDER_REGION)
+                .getConfiguration(CaffeineConfiguration.class);
+        assertThat(orders.getMaximumSize()).hasValue(10);
+    }
+
+    private Order order(String userName) throws NotEnoughMoneyException {
+        Order order = new Order();
+        order.setUserName(userName);
+        orderService.order(order);
+        return order;
+    }
+}
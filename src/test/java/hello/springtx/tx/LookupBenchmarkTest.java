@@ -0,0 +1,69 @@
+package hello.springtx.tx;
+
+import hello.springtx.propagation.Member;
+import hello.springtx.propagation.MemberService;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import javax.persistence.EntityManager;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * 인라인 JPQL(createQuery) vs named query 조회 지연시간
+ */
+@Slf4j
+@Tag("benchmark")
+@ActiveProfiles("benchmark")
+@SpringBootTest(properties = {
+        "logging.level.hello.springtx=INFO",
+        "jpa.second-level-cache.enabled=false" //쿼리 파싱 비용만 비교
+})
+class LookupBenchmarkTest {
+
+    static final int WARMUP = 10_000;
+    static final int LOOKUPS = 100_000;
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    MemberService memberService;
+
+    @Autowired
+    QueryStatistics queryStatistics;
+
+    @Test
+    void lookup() {
+        memberService.joinV2("lookup");
+
+        measure("inline", () -> em.createQuery("select m from Member m where m.username = :username", Member.class)
+                .setParameter("username", "lookup")
+                .getResultList());
+        measure("named", () -> em.createNamedQuery("Member.findByUsername", Member.class)
+                .setParameter("username", "lookup")
+                .getResultList());
+    }
+
+    private void measure(String mode, Supplier<?> lookup) {
+        for (int i = 0; i < WARMUP; i++) {
+            lookup.get();
+        }
+        queryStatistics.clear();
+
+        long start = System.nanoTime();
+        for (int i = 0; i < LOOKUPS; i++) {
+            lookup.get();
+        }
+        long elapsed = System.nanoTime() - start;
+
+        log.info("mode={} lookups={} avg={}ns planCacheHitRatio={} prepareStatement={}",
+                mode, LOOKUPS, elapsed / LOOKUPS, String.format("%.3f", queryStatistics.getPlanCacheHitRatio()),
+                queryStatistics.getPrepareStatementCount());
+        log.info("{} total={}ms", mode, TimeUnit.NANOSECONDS.toMillis(elapsed));
+    }
+}
@@ -0,0 +1,48 @@
+package hello.springtx.tx;
+
+import hello.springtx.propagation.LogRepository;
+import hello.springtx.propagation.MemberRepository;
+import hello.springtx.propagation.MemberService;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+//조회마다 SQL이 실행되는지 세므로 쿼리 캐시를 끈다
+@SpringBootTest(properties = "jpa.second-level-cache.enabled=false")
+class QueryStatisticsTest {
+
+    @Autowired
+    QueryStatistics queryStatistics;
+
+    @Autowired
+    MemberService memberService;
+
+    @Autowired
+    MemberRepository memberRepository;
+
+    @Autowired
+    LogRepository logRepository;
+
+    @Test
+    void namedQuery() {
+        //given
+        memberService.joinV2("namedQuery");
+        queryStatistics.clear();
+
+        //when
+        for (int i = 0; i < 10; i++) {
+            memberRepository.find("namedQuery");
+            logRepository.find("namedQuery");
+        }
+
+        //then
+        queryStatistics.log();
+        Assertions.assertThat(queryStatistics.isEnabled()).isTrue();
+        Assertions.assertThat(queryStatistics.getPlanCacheHitRatio()).isGreaterThan(0.9);
+        Assertions.assertThat(queryStatistics.getPrepareStatementCount()).isEqualTo(20);
+        Assertions.assertThat(queryStatistics.getQueryExecutionTimes())
+                .containsKeys("select m from Member m where m.username = :username",
+                        "select l from Log l where l.message = :message");
+    }
+}
@@ -0,0 +1,66 @@
+package hello.springtx.tx;
+
+import hello.springtx.propagation.MemberRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.UnexpectedRollbackException;
+import org.springframework.transaction.interceptor.DefaultTransactionAttribute;
+
+import javax.persistence.EntityManager;
+
+@Slf4j
+@SpringBootTest(properties = "tx.rollback-only.fail-fast=true")
+class RollbackOnlyGuardTest {
+
+    @Autowired
+    PlatformTransactionManager txManager;
+
+    @Autowired
+    RollbackOnlyGuard rollbackOnlyGuard;
+
+    @Autowired
+    MemberRepository memberRepository;
+
+    @Autowired
+    EntityManager em;
+
+    @Test
+    void failFast() {
+        long participations = rollbackOnlyGuard.getRejectedParticipations();
+        long statements = rollbackOnlyGuard.getRejectedStatements();
+
+        log.info("외부 트랜잭션 시작");
+        TransactionStatus outer = txManager.getTransaction(new DefaultTransactionAttribute());
+
+        log.info("내부 트랜잭션 롤백");
+        TransactionStatus inner = txManager.getTransaction(new DefaultTransactionAttribute());
+        txManager.rollback(inner); //외부 물리 트랜잭션에 rollback-only 표시
+
+        //참여 트랜잭션은 바로 거절
+        Assertions.assertThatThrownBy(() -> txManager.getTransaction(new DefaultTransactionAttribute()))
+                .isInstanceOf(RollbackOnlyTransactionException.class);
+        Assertions.assertThatThrownBy(() -> memberRepository.find("failFast"))
+                .isInstanceOf(UnexpectedRollbackException.class);
+
+        Assertions.assertThat(rollbackOnlyGuard.getRejectedParticipations()).isEqualTo(participations + 1);
+        Assertions.assertThat(rollbackOnlyGuard.getRejectedStatements()).isEqualTo(statements + 1);
+
+        log.info("외부 트랜잭션 커밋");
+        Assertions.assertThatThrownBy(() -> txManager.commit(outer))
+                .isInstanceOf(UnexpectedRollbackException.class);
+    }
+
+    @Test
+    void notRollbackOnly() {
+        TransactionStatus outer = txManager.getTransaction(new DefaultTransactionAttribute());
+        TransactionStatus inner = txManager.getTransaction(new DefaultTransactionAttribute());
+        memberRepository.find("notRollbackOnly");
+        txManager.commit(inner);
+        txManager.commit(outer);
+    }
+}
@@ -0,0 +1,110 @@
+package hello.springtx.tx;
+
+import lombok.extern.slf4j.Slf4j;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.orm.jpa.EntityManagerHolder;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.TransactionTimedOutException;
+import org.springframework.transaction.interceptor.DefaultTransactionAttribute;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.persistence.EntityManagerFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+@Slf4j
+@SpringBootTest(properties = "tx.deadline.default-ms=3000")
+class TransactionDeadlineTest {
+
+    @Autowired
+    PlatformTransactionManager txManager;
+
+    @Autowired
+    EntityManagerFactory emf;
+
+    //sleep 대신 데드라인 시계를 직접 움직인다
+    AtomicLong now = new AtomicLong();
+
+    @BeforeEach
+    void setUp() {
+        ((InstrumentedJpaTransactionManager) txManager).setClock(now::get);
+    }
+
+    @AfterEach
+    void tearDown() {
+        ((InstrumentedJpaTransactionManager) txManager).setClock(System::nanoTime);
+    }
+
+    @Test
+    void requiresNewGetsRemaining() {
+        log.info("외부 트랜잭션 시작");
+        TransactionStatus outer = txManager.getTransaction(new DefaultTransactionAttribute());
+        Assertions.assertThat(TransactionDeadline.remainingSeconds()).isEqualTo(3);
+        Assertions.assertThat(timeToLive()).isLessThanOrEqualTo(3000);
+
+        now.addAndGet(TimeUnit.MILLISECONDS.toNanos(1100));
+
+        log.info("내부 트랜잭션 시작");
+        TransactionStatus inner = txManager.getTransaction(requiresNew());
+        //남은 2초 정도만 받아야함
+        Assertions.assertThat(TransactionDeadline.remainingSeconds()).isEqualTo(2);
+        Assertions.assertThat(timeToLive()).isLessThanOrEqualTo(2000);
+        txManager.commit(inner);
+
+        txManager.commit(outer);
+        Assertions.assertThat(TransactionDeadline.remainingSeconds()).isEqualTo(TransactionDefinition.TIMEOUT_DEFAULT);
+    }
+
+    @Test
+    void deadlineExceeded() {
+        TransactionStatus outer = txManager.getTransaction(new DefaultTransactionAttribute());
+        now.addAndGet(TimeUnit.MILLISECONDS.toNanos(3100));
+
+        //데드라인이 지나면 새 커넥션을 잡기 전에 바로 실패
+        Assertions.assertThatThrownBy(() -> txManager.getTransaction(requiresNew()))
+                .isInstanceOf(TransactionTimedOutException.class);
+
+        txManager.rollback(outer);
+        Assertions.assertThat(TransactionDeadline.remainingSeconds()).isEqualTo(TransactionDefinition.TIMEOUT_DEFAULT);
+    }
+
+    @Test
+    void backgroundWithoutDefault() {
+        //백그라운드 작업은 기본 데드라인을 받지 않는다
+        TransactionDeadline.withoutDefault(() -> {
+            TransactionStatus status = txManager.getTransaction(new DefaultTransactionAttribute());
+            now.addAndGet(TimeUnit.MILLISECONDS.toNanos(3100));
+            Assertions.assertThat(TransactionDeadline.remainingSeconds()).isEqualTo(TransactionDefinition.TIMEOUT_DEFAULT);
+            TransactionStatus inner = txManager.getTransaction(requiresNew());
+            txManager.commit(inner);
+            txManager.commit(status);
+        });
+
+        //직접 지정한 timeout은 그대로 적용된다
+        TransactionDeadline.withoutDefault(() -> {
+            DefaultTransactionAttribute definition = new DefaultTransactionAttribute();
+            definition.setTimeout(1);
+            TransactionStatus status = txManager.getTransaction(definition);
+            Assertions.assertThat(TransactionDeadline.remainingSeconds()).isEqualTo(1);
+            txManager.commit(status);
+        });
+    }
+
+    private static DefaultTransactionAttribute requiresNew() {
+        DefaultTransactionAttribute definition = new DefaultTransactionAttribute();
+        definition.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        return definition;
+    }
+
+    private long timeToLive() {
+        EntityManagerHolder holder = (EntityManagerHolder) TransactionSynchronizationManager.getResource(emf);
+        return holder.getTimeToLiveInMillis();
+    }
+}
@@ -0,0 +1,78 @@
+package hello.springtx.tx;
+
+import hello.springtx.propagation.MemberService;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import lombok.extern.slf4j.Slf4j;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+
+@Slf4j
+@SpringBootTest
+class TransactionEventsTest {
+
+    @Autowired
+    MemberService memberService;
+
+    @Autowired
+    PlatformTransactionManager txManager;
+
+    @Test
+    void transactionManager() {
+        Assertions.assertThat(txManager).isInstanceOf(InstrumentedJpaTransactionManager.class);
+    }
+
+    /**
+     * joinV2 로그예외
+     * memberService 시작 -> memberRepository 참여 -> logRepository REQUIRES_NEW(보류/시작/롤백/재개) -> memberService 커밋
+     */
+    @Test
+    void recoverException() throws Exception {
+        List<RecordedEvent> events;
+        try (Recording recording = new Recording()) {
+            recording.enable("hello.springtx.*");
+            recording.start();
+
+            memberService.joinV2("로그예외_jfr_recoverException");
+
+            recording.stop();
+            Path file = Files.createTempFile("springtx", ".jfr");
+            recording.dump(file);
+            events = RecordingFile.readAllEvents(file).stream()
+                    .filter(e -> e.getEventType().getName().startsWith("hello.springtx."))
+                    .collect(Collectors.toList());
+            Files.delete(file);
+        }
+        events.forEach(e -> log.info("{} name={}", e.getEventType().getName(), e.getString("name")));
+
+        List<String> types = events.stream().map(e -> e.getEventType().getName()).collect(Collectors.toList());
+        Assertions.assertThat(types).contains(
+                "hello.springtx.TransactionBegin",
+                "hello.springtx.TransactionParticipate",
+                "hello.springtx.TransactionSuspend",
+                "hello.springtx.TransactionResume",
+                "hello.springtx.TransactionRollback",
+                "hello.springtx.TransactionCommit",
+                "hello.springtx.Transaction");
+
+        RecordedEvent suspend = events.stream()
+                .filter(e -> e.getEventType().getName().equals("hello.springtx.TransactionSuspend"))
+                .findFirst().get();
+        Assertions.assertThat(suspend.getString("name")).endsWith("MemberService.joinV2");
+
+        RecordedEvent rollback = events.stream()
+                .filter(e -> e.getEventType().getName().equals("hello.springtx.TransactionRollback"))
+                .findFirst().get();
+        Assertions.assertThat(rollback.getString("name")).endsWith("LogRepository.save");
+        Assertions.assertThat(rollback.getString("propagation")).isEqualTo("REQUIRES_NEW");
+    }
+}